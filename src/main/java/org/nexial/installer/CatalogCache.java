@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonParseException;
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.nexial.installer.Const.GSON;
+import static org.nexial.installer.Const.UTF8;
+
+/**
+ * on-disk cache of the version catalog fetched via {@code nexial.versions.url}. Along with the parsed versions, we
+ * keep the validators (ETag/Last-Modified) of the response so that the next fetch can be a conditional request; a
+ * {@code 304 Not Modified} is then served from here without downloading or parsing the catalog again.
+ * <p>
+ * Catalogs read (or written) are also kept in memory, and read again only when their file is changed, such as by
+ * another installer process.
+ */
+class CatalogCache {
+    private final File cacheDir;
+    private final Map<String, Entry> loaded = new ConcurrentHashMap<>();
+
+    /** one cached catalog; serialized as JSON */
+    protected static class Entry {
+        private String url;
+        private String etag;
+        private String lastModified;
+        private long fetchedAt;
+        private Map<String, String> versions = new LinkedHashMap<>();
+        // last modified time of the file this entry is read from; not serialized
+        private transient long loadedFrom;
+
+        public String getUrl() { return url;}
+
+        public String getEtag() { return etag;}
+
+        public String getLastModified() { return lastModified;}
+
+        public long getFetchedAt() { return fetchedAt;}
+
+        public Map<String, String> getVersions() { return versions;}
+    }
+
+    protected CatalogCache(File cacheDir) { this.cacheDir = cacheDir; }
+
+    /** last good catalog fetched from {@code url}, or {@code null} if none */
+    protected Entry load(String url) {
+        File cacheFile = resolveCacheFile(url);
+        if (!cacheFile.canRead()) { return null; }
+
+        long lastModified = cacheFile.lastModified();
+        Entry entry = loaded.get(url);
+        if (entry != null && entry.loadedFrom == lastModified) { return entry; }
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), UTF8)) {
+            entry = GSON.fromJson(reader, Entry.class);
+            // guard against hash collision or a hand-edited file
+            if (entry == null || !StringUtils.equals(url, entry.url) || entry.versions == null) { return null; }
+            entry.loadedFrom = lastModified;
+            loaded.put(url, entry);
+            return entry;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    protected Entry save(String url, String etag, String lastModified, Map<String, String> versions)
+        throws IOException {
+        Entry entry = new Entry();
+        entry.url = url;
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.fetchedAt = System.currentTimeMillis();
+        entry.versions = new LinkedHashMap<>(versions);
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("unable to create catalog cache directory " + cacheDir);
+        }
+
+        // write to temp file first, then swap in, so that concurrent readers never see a half-written catalog
+        File cacheFile = resolveCacheFile(url);
+        File tmpFile = new File(cacheFile.getAbsolutePath() + "." + System.nanoTime() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), UTF8)) {
+            GSON.toJson(entry, writer);
+        }
+        try {
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        entry.loadedFrom = cacheFile.lastModified();
+        loaded.put(url, entry);
+        return entry;
+    }
+
+    protected File resolveCacheFile(String url) {
+        return new File(cacheDir, "catalog-" + Integer.toHexString(url.hashCode()) + ".json");
+    }
+}
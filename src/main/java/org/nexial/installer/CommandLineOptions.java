@@ -16,8 +16,13 @@
 
 package org.nexial.installer;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.StringJoiner;
 
 import org.apache.commons.lang3.StringUtils;
@@ -28,10 +33,26 @@ public class CommandLineOptions {
     private boolean listOnly;
     private String version;
     private String installTarget;
+    // -target repeated (or a target list): install into each of them, backed up to the backup of the same position
+    private final List<String> installTargets = new ArrayList<>();
+    private final List<String> backupTargets = new ArrayList<>();
     private String backupTarget;
     private boolean keepDownloaded;
     private boolean isSilentUpdate;
     private boolean isUpgrade;
+    private boolean daemon;
+    private boolean publish;
+    private String publishDir;
+    private int segments;
+    private boolean stream;
+    private boolean incremental;
+    private boolean offline;
+    private boolean verify;
+    private boolean sideBySide;
+    private String useVersion;
+    private String uninstallVersion;
+    private boolean rollback;
+    private String rollbackVersion;
 
     private CommandLineOptions() {}
 
@@ -41,7 +62,7 @@ public class CommandLineOptions {
         // e.g. -install [version] -target [dir] -backup [dir] -keepDownloaded
         CommandLineOptions options = new CommandLineOptions();
 
-        Iterator<String> argIterator = Arrays.stream(args).iterator();
+        ListIterator<String> argIterator = Arrays.asList(args).listIterator();
         while (argIterator.hasNext()) {
             String option = argIterator.next();
             String opt = StringUtils.removeStart(option, "-");
@@ -59,13 +80,13 @@ public class CommandLineOptions {
 
             if (OPT_TARGET.equalsIgnoreCase(opt) || OPT_TARGET_T.equalsIgnoreCase(opt)) {
                 if (!argIterator.hasNext()) { throw new IllegalArgumentException("No target directory specified"); }
-                options.setInstallTarget(argIterator.next());
+                options.addInstallTarget(argIterator.next());
                 continue;
             }
 
             if (OPT_BACKUP.equalsIgnoreCase(opt) || OPT_BACKUP_B.equalsIgnoreCase(opt)) {
                 if (!argIterator.hasNext()) { throw new IllegalArgumentException("No backup directory specified"); }
-                options.setBackupTarget(argIterator.next());
+                options.addBackupTarget(argIterator.next());
                 continue;
             }
 
@@ -84,6 +105,86 @@ public class CommandLineOptions {
                 continue;
             }
 
+            if (OPT_DAEMON.equalsIgnoreCase(opt) || OPT_DAEMON_DM.equalsIgnoreCase(opt)) {
+                options.setDaemon(true);
+                continue;
+            }
+
+            if (OPT_PUBLISH.equalsIgnoreCase(opt) || OPT_PUBLISH_PB.equalsIgnoreCase(opt)) {
+                options.setPublish(true);
+                // directory is optional
+                if (argIterator.hasNext()) {
+                    String dir = argIterator.next();
+                    if (dir.startsWith("-")) {
+                        argIterator.previous();
+                    } else {
+                        options.setPublishDir(dir);
+                    }
+                }
+                continue;
+            }
+
+            if (OPT_SEGMENTS.equalsIgnoreCase(opt) || OPT_SEGMENTS_SG.equalsIgnoreCase(opt)) {
+                if (!argIterator.hasNext()) { throw new IllegalArgumentException("No segment count specified"); }
+                String segments = argIterator.next();
+                if (!StringUtils.isNumeric(segments) || Integer.parseInt(segments) < 1) {
+                    throw new IllegalArgumentException("Invalid segment count: " + segments);
+                }
+                options.setSegments(Integer.parseInt(segments));
+                continue;
+            }
+
+            if (OPT_STREAM.equalsIgnoreCase(opt) || OPT_STREAM_ST.equalsIgnoreCase(opt)) {
+                options.setStream(true);
+                continue;
+            }
+
+            if (OPT_OFFLINE.equalsIgnoreCase(opt) || OPT_OFFLINE_OF.equalsIgnoreCase(opt)) {
+                options.setOffline(true);
+                continue;
+            }
+
+            if (OPT_INCREMENTAL.equalsIgnoreCase(opt) || OPT_INCREMENTAL_IC.equalsIgnoreCase(opt)) {
+                options.setIncremental(true);
+                continue;
+            }
+
+            if (OPT_VERIFY.equalsIgnoreCase(opt) || OPT_VERIFY_V.equalsIgnoreCase(opt)) {
+                options.setVerify(true);
+                continue;
+            }
+
+            if (OPT_SIDE_BY_SIDE.equalsIgnoreCase(opt) || OPT_SIDE_BY_SIDE_SS.equalsIgnoreCase(opt)) {
+                options.setSideBySide(true);
+                continue;
+            }
+
+            if (OPT_USE.equalsIgnoreCase(opt) || OPT_USE_U.equalsIgnoreCase(opt)) {
+                if (!argIterator.hasNext()) { throw new IllegalArgumentException("No version specified"); }
+                options.setUseVersion(argIterator.next());
+                continue;
+            }
+
+            if (OPT_UNINSTALL.equalsIgnoreCase(opt) || OPT_UNINSTALL_UI.equalsIgnoreCase(opt)) {
+                if (!argIterator.hasNext()) { throw new IllegalArgumentException("No version specified"); }
+                options.setUninstallVersion(argIterator.next());
+                continue;
+            }
+
+            if (OPT_ROLLBACK.equalsIgnoreCase(opt) || OPT_ROLLBACK_RB.equalsIgnoreCase(opt)) {
+                options.setRollback(true);
+                // version is optional
+                if (argIterator.hasNext()) {
+                    String version = argIterator.next();
+                    if (version.startsWith("-")) {
+                        argIterator.previous();
+                    } else {
+                        options.setRollbackVersion(version);
+                    }
+                }
+                continue;
+            }
+
             throw new IllegalArgumentException("Unknown commandline argument: " + option);
         }
 
@@ -102,6 +203,48 @@ public class CommandLineOptions {
 
     public void setBackupTarget(String backupTarget) { this.backupTarget = backupTarget;}
 
+    public List<String> getInstallTargets() { return installTargets;}
+
+    /** backup directory of each install target, by position; {@code null} means no backup */
+    public List<String> getBackupTargets() { return backupTargets;}
+
+    /**
+     * add a target directory, or if {@code target} is {@code @<file>}, the targets listed in that file: one per line
+     * as {@code target} or {@code target;backup}
+     */
+    public void addInstallTarget(String target) {
+        if (!StringUtils.startsWith(target, "@")) {
+            installTargets.add(target);
+            if (installTarget == null) { installTarget = target; }
+            return;
+        }
+
+        File targetList = new File(target.substring(1));
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(targetList.toPath(), UTF8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read target list " + targetList + ": " + e.getMessage());
+        }
+
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) { continue; }
+
+            // backups so far belong to the targets so far
+            while (backupTargets.size() < installTargets.size()) { backupTargets.add(null); }
+            addInstallTarget(StringUtils.trim(StringUtils.substringBefore(line, ";")));
+            String backup = StringUtils.trimToNull(StringUtils.substringAfter(line, ";"));
+            backupTargets.add(backup);
+            if (installTargets.size() == 1 && backupTarget == null) { backupTarget = backup; }
+        }
+    }
+
+    public void addBackupTarget(String backup) {
+        backupTargets.add(backup);
+        if (backupTarget == null) { backupTarget = backup; }
+    }
+
     public boolean isKeepDownloaded() { return keepDownloaded;}
 
     public void setKeepDownloaded(boolean keepDownloaded) { this.keepDownloaded = keepDownloaded;}
@@ -126,13 +269,72 @@ public class CommandLineOptions {
         isUpgrade = upgrade;
     }
 
+    public int getSegments() { return segments;}
+
+    public void setSegments(int segments) { this.segments = segments;}
+
+    public boolean isStream() { return stream;}
+
+    public void setStream(boolean stream) { this.stream = stream;}
+
+    public boolean isOffline() { return offline;}
+
+    public void setOffline(boolean offline) { this.offline = offline;}
+
+    public boolean isIncremental() { return incremental;}
+
+    public void setIncremental(boolean incremental) { this.incremental = incremental;}
+
+    public boolean isVerify() { return verify;}
+
+    public void setVerify(boolean verify) { this.verify = verify;}
+
+    public boolean isSideBySide() { return sideBySide;}
+
+    public void setSideBySide(boolean sideBySide) { this.sideBySide = sideBySide;}
+
+    public String getUseVersion() { return useVersion;}
+
+    public void setUseVersion(String useVersion) { this.useVersion = useVersion;}
+
+    public String getUninstallVersion() { return uninstallVersion;}
+
+    public void setUninstallVersion(String uninstallVersion) { this.uninstallVersion = uninstallVersion;}
+
+    public boolean isDaemon() { return daemon;}
+
+    public void setDaemon(boolean daemon) { this.daemon = daemon;}
+
+    public boolean isPublish() { return publish;}
+
+    public void setPublish(boolean publish) { this.publish = publish;}
+
+    public String getPublishDir() { return publishDir;}
+
+    public void setPublishDir(String publishDir) { this.publishDir = publishDir;}
+
+    public boolean isRollback() { return rollback;}
+
+    public void setRollback(boolean rollback) { this.rollback = rollback;}
+
+    public String getRollbackVersion() { return rollbackVersion;}
+
+    public void setRollbackVersion(String rollbackVersion) { this.rollbackVersion = rollbackVersion;}
+
     @Override
     public String toString() {
         return new StringJoiner(", ", "[", "]")
                    .add("version='" + version + "'")
                    .add("installTarget='" + installTarget + "'")
+                   .add("installTargets=" + installTargets)
                    .add("backupTarget='" + backupTarget + "'")
                    .add("keepDownloaded=" + keepDownloaded)
+                   .add("segments=" + segments)
+                   .add("stream=" + stream)
+                   .add("offline=" + offline)
+                   .add("incremental=" + incremental)
+                   .add("sideBySide=" + sideBySide)
+                   .add("verify=" + verify)
                    .toString();
     }
 }
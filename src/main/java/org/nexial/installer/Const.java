@@ -43,6 +43,18 @@ final class Const {
     protected static final String NEXIAL_HOME = "nexial-core";
     protected static final String NEXIAL_BAK = "nexial-core.BAK";
     protected static final String FINGERPRINT = "version.txt";
+    protected static final String INSTALL_MANIFEST = ".manifest.nx";
+    // under ~/.nexial/install; old installations and stage directories waiting to be deleted
+    protected static final String TRASH_DIR = "trash";
+    // under ~/.nexial; Nexial versions installed side by side, and the files they share
+    protected static final String VERSIONS_DIR = "versions";
+    protected static final String STORE_DIR = "store";
+    // under ~/.nexial; installations replaced by install or upgrade, for rollback
+    protected static final String SNAPSHOTS_DIR = "snapshots";
+    // in updateFromDir (of install.conf); versions packed for network install, see -publish
+    protected static final String SHARE_INDEX = "versions.nx";
+    // sidecar file to track partial download, for resume
+    protected static final String DOWNLOAD_STATE_SUFFIX = ".download.nx";
     // check for file existence using "start-with" strategy
     protected static final List<String> SPOT_CHECK_LIST = Arrays.asList("bin" + separator + "nexial.cmd",
                                                                         "bin" + separator + "nexial.sh",
@@ -51,17 +63,69 @@ final class Const {
                                                                         "lib" + separator + "setup",
                                                                         "template" + separator + "nexial-data.xlsx",
                                                                         "template" + separator + "nexial-script.xlsx");
+    // extracted files made executable when the distro carries no permissions for them
+    protected static final List<String> EXECUTABLE_EXTENSIONS = Arrays.asList("sh", "bash", "bat", "cmd");
 
     protected static final String APP = "Nexial Installer";
     protected static final String VERSION = "v1.4.7";
 
     protected static final String PROP_VERSIONS_URL = "nexial.versions.url";
     protected static final String PROP_EDITION = "installer.edition";
+    protected static final String PROP_DOWNLOAD_SEGMENTS = "nexial.download.segments";
+    protected static final String PROP_INSTALL_STREAM = "nexial.install.stream";
+    protected static final String PROP_IO_BUFFER_SIZE = "nexial.io.bufferSize";
+    protected static final String PROP_CACHE_MAX_SIZE = "nexial.cache.maxSize";
+    protected static final String PROP_VERSIONS_OFFLINE = "nexial.versions.offline";
+    protected static final String PROP_UNZIP_THREADS = "nexial.unzip.threads";
+    protected static final String PROP_INSTALL_INCREMENTAL = "nexial.install.incremental";
+    protected static final String PROP_BACKUP_SNAPSHOT = "nexial.backup.snapshot";
+    protected static final String PROP_TREE_THREADS = "nexial.tree.threads";
+    protected static final String PROP_INSTALL_SIDE_BY_SIDE = "nexial.install.sideBySide";
+    protected static final String PROP_SNAPSHOT_RETAIN = "nexial.snapshot.retain";
+    protected static final String PROP_QUOTA_MAX_SIZE = "nexial.quota.maxSize";
+    protected static final String PROP_DAEMON_INTERVAL = "nexial.daemon.interval";
+    protected static final String PROP_DAEMON_RETRY = "nexial.daemon.retry";
 
     protected static final int LINE_WIDTH = 80;
+    // default I/O buffer size; see PROP_IO_BUFFER_SIZE
     protected static final int BUFFER_SIZE = 8192;
+    protected static final int MIN_BUFFER_SIZE = 1024;
+    // size cap of distro cache, in MB
+    protected static final int DEF_CACHE_MAX_SIZE = 1024;
+    // replaced installations to keep for rollback
+    protected static final int DEF_SNAPSHOT_RETAIN = 3;
+    // space (in MB) that downloads, stage directories, distro cache, snapshots and backup may take altogether
+    protected static final int DEF_QUOTA_MAX_SIZE = 4096;
+    // time (ms) a disk quota pass may take at startup, and how recently modified (ms) is too recent to evict
+    protected static final long QUOTA_TIME_BOX = 2000;
+    protected static final long QUOTA_MIN_AGE = 60 * 60 * 1000;
+    // -daemon: minutes between update checks, and minutes till the first retry of a failed check
+    protected static final int DEF_DAEMON_INTERVAL = 360;
+    protected static final int DEF_DAEMON_RETRY = 5;
+    // fewer, larger reads make for faster copy over SMB/NFS
+    protected static final int SHARE_READ_SIZE = 1024 * 1024;
     // show progress per mb downloaded
     protected static final int SHOW_PROGRESS_PER_BYTE = 1024 * 1024;
+    // no point splitting a download into segments smaller than this
+    protected static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+    protected static final int DEF_DOWNLOAD_SEGMENTS = 1;
+    protected static final int MAX_DOWNLOAD_SEGMENTS = 16;
+    protected static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+    // persist download progress (for resume) after this many bytes per segment
+    protected static final int DOWNLOAD_STATE_SAVE_INTERVAL = 1024 * 1024;
+    // how much downloaded-but-not-yet-extracted data to buffer during streaming install
+    protected static final int STREAM_PIPE_SIZE = 4 * 1024 * 1024;
+    // GitHub release listing: max pages to fetch, and how many at a time
+    protected static final int MAX_CATALOG_PAGES = 50;
+    protected static final int CATALOG_FETCH_THREADS = 4;
+    // distro smaller than this (compressed) is extracted on a single thread
+    protected static final long MIN_PARALLEL_UNZIP_SIZE = 1024 * 1024;
+    // copy/move/delete of directory trees is mostly waiting on the file system; no need for more threads than this
+    protected static final int MAX_TREE_THREADS = 16;
+    // phases of an install that may run at the same time: version resolution/download, installation directory, backup
+    protected static final int INSTALL_PHASE_THREADS = 3;
+    // install targets to extract into at the same time; each extraction is multi-threaded already
+    protected static final int MAX_PARALLEL_TARGETS = 4;
     protected static final String REGEX_A_HREF_TAG = ".+<a href=\".+\".+>.+</a>";
 
     protected static final String OPT_LIST = "list";
@@ -72,6 +136,17 @@ final class Const {
     protected static final String OPT_KEEP_DOWNLOADED = "keepDownloaded";
     protected static final String OPT_SILENT_UPDATE = "silentUpdate";
     protected static final String OPT_UPGRADE_NEXIAL = "upgradeNexial";
+    protected static final String OPT_DAEMON = "daemon";
+    protected static final String OPT_PUBLISH = "publish";
+    protected static final String OPT_SEGMENTS = "segments";
+    protected static final String OPT_STREAM = "stream";
+    protected static final String OPT_OFFLINE = "offline";
+    protected static final String OPT_INCREMENTAL = "incremental";
+    protected static final String OPT_VERIFY = "verify";
+    protected static final String OPT_SIDE_BY_SIDE = "sideBySide";
+    protected static final String OPT_USE = "use";
+    protected static final String OPT_UNINSTALL = "uninstall";
+    protected static final String OPT_ROLLBACK = "rollback";
     protected static final String OPT_QUIT = "quit";
     protected static final String OPT_LIST_L = "L";
     protected static final String OPT_INSTALL_I = "I";
@@ -81,6 +156,17 @@ final class Const {
     protected static final String OPT_KEEP_DOWNLOADED_KD = "KD";
     protected static final String OPT_SILENT_UPDATE_SU = "SU";
     protected static final String OPT_UPGRADE_NEXIAL_UN = "UN";
+    protected static final String OPT_DAEMON_DM = "DM";
+    protected static final String OPT_PUBLISH_PB = "PB";
+    protected static final String OPT_SEGMENTS_SG = "SG";
+    protected static final String OPT_STREAM_ST = "ST";
+    protected static final String OPT_OFFLINE_OF = "OF";
+    protected static final String OPT_INCREMENTAL_IC = "IC";
+    protected static final String OPT_VERIFY_V = "V";
+    protected static final String OPT_SIDE_BY_SIDE_SS = "SS";
+    protected static final String OPT_USE_U = "U";
+    protected static final String OPT_UNINSTALL_UI = "UI";
+    protected static final String OPT_ROLLBACK_RB = "RB";
     protected static final String OPT_QUIT_Q = "Q";
     protected static final String VER_LATEST = "latest";
 
@@ -91,6 +177,11 @@ final class Const {
     protected static final int ERR_ARGS_MISSING = -5;
     protected static final int ERR_FAIL_CREATE_DIR = -6;
     protected static final int ERR_DUP_PROCESS = -8;
+    protected static final int ERR_VERIFY_FAILED = -9;
+    protected static final int ERR_INSTALL_TARGETS_FAILED = -10;
+    protected static final int ERR_VERSION_SWITCH_FAILED = -11;
+    protected static final int ERR_ROLLBACK_FAILED = -12;
+    protected static final int ERR_PUBLISH_FAILED = -14;
 
     protected enum PadOption {LEFT, RIGHT, CENTER}
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static org.nexial.installer.Const.QUOTA_MIN_AGE;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * keeps the space taken by what the installer leaves behind (downloads, stage directories, cached distros, snapshots,
+ * backup) within a budget. Each of these is registered as a candidate for eviction with a priority; when over budget,
+ * candidates are evicted lowest priority first, and oldest first within the same priority. Anything modified within
+ * the last {@link Const#QUOTA_MIN_AGE} ms is left alone, as it may be in use.
+ * <p>
+ * Measuring takes walking the trees, so a pass is time-boxed: candidates are measured in the order they would be
+ * evicted, and only those measured in time may be evicted; the rest is left for the next pass. A file hard-linked
+ * from several candidates counts once, toward the first of them; evicting that one may then free less than counted,
+ * which the next pass makes up for.
+ */
+final class DiskQuota {
+    private final long budget;
+    private final long timeBox;
+    private final List<Candidate> candidates = new ArrayList<>();
+
+    /** what evicts a candidate */
+    interface Eviction {
+        void evict(Path path) throws IOException;
+    }
+
+    private static final class Candidate {
+        private final Path path;
+        private final int priority;
+        private final long lastModified;
+        private final Eviction eviction;
+        private long size;
+
+        private Candidate(Path path, int priority, long lastModified, Eviction eviction) {
+            this.path = path;
+            this.priority = priority;
+            this.lastModified = lastModified;
+            this.eviction = eviction;
+        }
+    }
+
+    /** {@code budget} in bytes, less than 1 meaning no budget; {@code timeBox} in ms */
+    DiskQuota(long budget, long timeBox) {
+        this.budget = budget;
+        this.timeBox = timeBox;
+    }
+
+    protected boolean isEnabled() { return budget > 0; }
+
+    /** {@code path} (file or directory) may be evicted by {@code eviction}; lower priority is evicted first */
+    protected void add(Path path, int priority, Eviction eviction) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS);
+            candidates.add(new Candidate(path, priority, attributes.lastModifiedTime().toMillis(), eviction));
+        } catch (IOException e) {
+            // not there (anymore)
+        }
+    }
+
+    /** each entry of {@code dir} accepted by {@code filter} may be evicted; see {@link #add(Path, int, Eviction)} */
+    protected void addEach(Path dir, DirectoryStream.Filter<Path> filter, int priority, Eviction eviction) {
+        if (!Files.isDirectory(dir)) { return; }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir, filter)) {
+            for (Path path : paths) { add(path, priority, eviction); }
+        } catch (IOException e) {
+            error("Unable to list " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /** evict candidates until within budget, or out of time; returns the number of bytes freed */
+    protected long enforce() {
+        if (!isEnabled() || candidates.isEmpty()) { return 0; }
+
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + timeBox;
+        candidates.sort(Comparator.comparingInt((Candidate candidate) -> candidate.priority)
+                                  .thenComparingLong(candidate -> candidate.lastModified));
+
+        // files already counted, by file key (where the file system has one)
+        Set<Object> counted = new HashSet<>();
+        long used = 0;
+        int measured = 0;
+        for (Candidate candidate : candidates) {
+            if (!measure(candidate, counted, deadline)) { break; }
+            used += candidate.size;
+            measured++;
+        }
+
+        String ofAll = measured == candidates.size() ? "" : " (" + measured + " of " + candidates.size() + " measured)";
+        if (used <= budget) {
+            if (measured < candidates.size()) { log("disk quota: " + used + " bytes used so far" + ofAll); }
+            return 0;
+        }
+
+        log("disk quota: " + used + " bytes used" + ofAll + ", over budget of " + budget + " bytes");
+        long freed = 0;
+        for (Candidate candidate : candidates.subList(0, measured)) {
+            if (used - freed <= budget || System.currentTimeMillis() > deadline) { break; }
+            if (candidate.size == 0 || startTime - candidate.lastModified < QUOTA_MIN_AGE) { continue; }
+
+            try {
+                candidate.eviction.evict(candidate.path);
+                freed += candidate.size;
+                log("disk quota: evicted " + candidate.path + " (" + candidate.size + " bytes)");
+            } catch (IOException e) {
+                error("Unable to evict " + candidate.path + ": " + e.getMessage());
+            }
+        }
+
+        log("disk quota: " + freed + " bytes freed in " + (System.currentTimeMillis() - startTime) + " ms");
+        return freed;
+    }
+
+    /** size of {@code candidate}, not counting files counted already; false if out of time */
+    private static boolean measure(Candidate candidate, Set<Object> counted, long deadline) {
+        long[] size = {0};
+        boolean[] inTime = {true};
+        try {
+            Files.walkFileTree(candidate.path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (System.currentTimeMillis() > deadline) {
+                        inTime[0] = false;
+                        return FileVisitResult.TERMINATE;
+                    }
+
+                    Object key = attributes.fileKey();
+                    if (key == null || counted.add(key)) { size[0] += attributes.size(); }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) { return FileVisitResult.CONTINUE; }
+            });
+        } catch (IOException e) {
+            // as much as could be measured
+        }
+
+        candidate.size = size[0];
+        return inTime[0];
+    }
+}
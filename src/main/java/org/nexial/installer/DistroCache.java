@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * persistent, content-addressed cache of downloaded distros. Each distro is stored once as
+ * {@code blobs/<sha256>.zip}, and {@code index.nx} maps version to SHA-256. The least recently used blobs are evicted
+ * when the cache grows beyond its size cap. All index access is guarded by a file lock so that concurrent installer
+ * processes (e.g. silent update alongside an interactive install) can share the same cache.
+ */
+class DistroCache {
+    private static final String BLOB_DIR = "blobs";
+    private static final String BLOB_EXT = ".zip";
+    private static final String INDEX_FILE = "index.nx";
+    private static final String LOCK_FILE = "cache.lock";
+
+    private final File cacheDir;
+    private final File blobDir;
+    private final long maxBytes;
+
+    protected DistroCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.blobDir = new File(cacheDir, BLOB_DIR);
+        this.maxBytes = maxBytes;
+    }
+
+    protected boolean isEnabled() { return maxBytes > 0; }
+
+    protected File getCacheDir() { return cacheDir; }
+
+    protected File getBlobDir() { return blobDir; }
+
+    /** is {@code file} a cached distro (which must not be moved or deleted by its user)? */
+    protected boolean contains(File file) { return file != null && blobDir.equals(file.getParentFile()); }
+
+    /**
+     * find the cached distro of {@code version}, or {@code null} if not cached. A hit is re-hashed to guard against
+     * a corrupted blob, and marked as most recently used.
+     */
+    protected File lookup(String version) {
+        if (!isEnabled() || StringUtils.isBlank(version)) { return null; }
+
+        try {
+            return withLock(() -> {
+                Properties index = loadIndex();
+                String sha256 = index.getProperty(version);
+                if (StringUtils.isBlank(sha256)) { return null; }
+
+                File blob = resolveBlob(sha256);
+                if (!blob.isFile() || !StringUtils.equals(sha256, sha256(blob))) {
+                    error("cached Nexial distro for " + version + " is missing or corrupted; removing from cache");
+                    index.remove(version);
+                    saveIndex(index);
+                    blob.delete();
+                    return null;
+                }
+
+                blob.setLastModified(System.currentTimeMillis());
+                return blob;
+            });
+        } catch (IOException e) {
+            error("Unable to read from distro cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * move {@code distro} into the cache as {@code version}, evicting older entries as needed. Returns the cached
+     * file, or {@code distro} itself if it could not be cached.
+     */
+    protected File store(String version, File distro) {
+        if (!isEnabled() || distro == null || !distro.isFile()) { return distro; }
+
+        if (distro.length() > maxBytes) {
+            log("Nexial distro is larger than the distro cache; not caching " + version);
+            return distro;
+        }
+
+        // hash outside the lock; it's the slow part
+        String sha256;
+        try {
+            sha256 = sha256(distro);
+        } catch (IOException e) {
+            error("Unable to add " + version + " to distro cache: " + e.getMessage());
+            return distro;
+        }
+
+        try {
+            return withLock(() -> {
+                File blob = resolveBlob(sha256);
+                if (blob.isFile()) {
+                    // same content as another version (or a previous download); no need to keep both
+                    Files.delete(distro.toPath());
+                } else {
+                    blobDir.mkdirs();
+                    Files.move(distro.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                blob.setLastModified(System.currentTimeMillis());
+
+                Properties index = loadIndex();
+                index.setProperty(version, sha256);
+                evict(index, blob);
+                saveIndex(index);
+                log("cached Nexial distro " + version + " as " + blob.getName());
+                return blob;
+            });
+        } catch (IOException e) {
+            error("Unable to add " + version + " to distro cache: " + e.getMessage());
+            // either the move did not happen, or it did and only the index update failed
+            return distro.isFile() ? distro : resolveBlob(sha256);
+        }
+    }
+
+    /** remove {@code blob} (a cached distro) from the cache, along with the versions cached as it */
+    protected void remove(File blob) throws IOException {
+        withLock(() -> {
+            Properties index = loadIndex();
+            Files.deleteIfExists(blob.toPath());
+            String sha256 = StringUtils.removeEnd(blob.getName(), BLOB_EXT);
+            index.entrySet().removeIf(entry -> sha256.equals(entry.getValue()));
+            saveIndex(index);
+            return null;
+        });
+    }
+
+    /** evict least recently used blobs (never {@code keep}) until the cache is within its size cap */
+    private void evict(Properties index, File keep) {
+        File[] blobs = blobDir.listFiles((dir, name) -> name.endsWith(BLOB_EXT));
+        if (blobs == null) { return; }
+
+        long totalBytes = Arrays.stream(blobs).mapToLong(File::length).sum();
+        if (totalBytes <= maxBytes) { return; }
+
+        Arrays.sort(blobs, Comparator.comparingLong(File::lastModified));
+        for (File blob : blobs) {
+            if (totalBytes <= maxBytes) { break; }
+            if (blob.equals(keep)) { continue; }
+
+            long length = blob.length();
+            if (blob.delete()) {
+                totalBytes -= length;
+                String sha256 = StringUtils.removeEnd(blob.getName(), BLOB_EXT);
+                index.entrySet().removeIf(entry -> sha256.equals(entry.getValue()));
+                log("evicted " + blob.getName() + " from distro cache");
+            }
+        }
+    }
+
+    private File resolveBlob(String sha256) { return new File(blobDir, sha256 + BLOB_EXT); }
+
+    private Properties loadIndex() throws IOException {
+        Properties index = new Properties();
+        File indexFile = new File(cacheDir, INDEX_FILE);
+        if (indexFile.isFile()) {
+            try (InputStream in = new FileInputStream(indexFile)) { index.load(in); }
+        }
+        return index;
+    }
+
+    private void saveIndex(Properties index) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(cacheDir, INDEX_FILE))) {
+            index.store(out, "Nexial distro cache: version=sha256");
+        }
+    }
+
+    /** run {@code action} while holding the cache lock, across threads and across processes */
+    private <T> T withLock(CacheAction<T> action) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("unable to create distro cache directory " + cacheDir);
+        }
+
+        synchronized (DistroCache.class) {
+            try (FileChannel channel = FileChannel.open(new File(cacheDir, LOCK_FILE).toPath(), CREATE, WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private interface CacheAction<T> {
+        T run() throws IOException;
+    }
+
+    protected static String sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HttpUtils.getBufferSize());
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    protected static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    protected static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.nexial.installer.Const.DOWNLOAD_STATE_SUFFIX;
+
+/**
+ * sidecar state of a partial download, kept next to the download target as {@code <target>.download.nx}. It records
+ * where the download came from, the validators (ETag/Last-Modified) of the remote resource at the time, and how many
+ * bytes each segment has written so far, so that an interrupted download can continue via HTTP Range requests.
+ */
+class DownloadState {
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_CONTENT_LENGTH = "contentLength";
+    private static final String KEY_SEGMENTS = "segments";
+    private static final String KEY_SEGMENT_PREFIX = "segment.";
+
+    private final File target;
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long contentLength;
+    private List<SaveFile.Segment> segments = new ArrayList<>();
+    private boolean invalid;
+
+    private DownloadState(File target) { this.target = target; }
+
+    protected static DownloadState newInstance(File target, String url, String etag, String lastModified,
+                                               long contentLength, int segmentCount) {
+        DownloadState state = new DownloadState(target);
+        state.url = url;
+        state.etag = etag;
+        state.lastModified = lastModified;
+        state.contentLength = contentLength;
+
+        long segmentSize = contentLength / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * segmentSize;
+            long end = i == segmentCount - 1 ? contentLength - 1 : start + segmentSize - 1;
+            state.segments.add(new SaveFile.Segment(i + 1, start, end));
+        }
+
+        return state;
+    }
+
+    /** load the state of a previous (partial) download of {@code target}, or {@code null} if none/unreadable. */
+    protected static DownloadState load(File target) {
+        File stateFile = resolveStateFile(target);
+        if (!stateFile.canRead()) { return null; }
+
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(stateFile)) {
+            props.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            DownloadState state = new DownloadState(target);
+            state.url = props.getProperty(KEY_URL);
+            state.etag = props.getProperty(KEY_ETAG);
+            state.lastModified = props.getProperty(KEY_LAST_MODIFIED);
+            state.contentLength = Long.parseLong(props.getProperty(KEY_CONTENT_LENGTH));
+
+            int segmentCount = Integer.parseInt(props.getProperty(KEY_SEGMENTS));
+            for (int i = 1; i <= segmentCount; i++) {
+                // format: start-end:written
+                String segment = props.getProperty(KEY_SEGMENT_PREFIX + i);
+                long start = Long.parseLong(StringUtils.substringBefore(segment, "-"));
+                long end = Long.parseLong(StringUtils.substringBetween(segment, "-", ":"));
+                long written = Long.parseLong(StringUtils.substringAfter(segment, ":"));
+                state.segments.add(new SaveFile.Segment(i, start, end, written));
+            }
+            return state;
+        } catch (RuntimeException e) {
+            // corrupted state; start over
+            return null;
+        }
+    }
+
+    protected static void delete(File target) { resolveStateFile(target).delete(); }
+
+    protected static File resolveStateFile(File target) {
+        return new File(target.getParentFile(), target.getName() + DOWNLOAD_STATE_SUFFIX);
+    }
+
+    /**
+     * is this state resumable against the remote resource as it is now? Only when the resource is the same URL and
+     * length, and a strong validator (ETag, else Last-Modified) confirms that it has not changed.
+     */
+    protected boolean isResumable(String url, String etag, String lastModified, long contentLength) {
+        if (!StringUtils.equals(this.url, url) || this.contentLength != contentLength) { return false; }
+        if (target.length() != contentLength) { return false; }
+        if (StringUtils.isNotBlank(this.etag) && StringUtils.isNotBlank(etag)) {
+            return StringUtils.equals(this.etag, etag);
+        }
+        if (StringUtils.isNotBlank(this.lastModified) && StringUtils.isNotBlank(lastModified)) {
+            return StringUtils.equals(this.lastModified, lastModified);
+        }
+        return false;
+    }
+
+    /** the {@code If-Range} validator to send, so that the server refuses a partial response if the file changed */
+    protected String getIfRange() {
+        // weak ETag is not allowed in If-Range
+        if (StringUtils.isNotBlank(etag) && !StringUtils.startsWith(etag, "W/")) { return etag; }
+        return StringUtils.isNotBlank(lastModified) ? lastModified : null;
+    }
+
+    protected synchronized void save() throws IOException {
+        if (invalid) { return; }
+
+        Properties props = new Properties();
+        props.setProperty(KEY_URL, url);
+        if (etag != null) { props.setProperty(KEY_ETAG, etag); }
+        if (lastModified != null) { props.setProperty(KEY_LAST_MODIFIED, lastModified); }
+        props.setProperty(KEY_CONTENT_LENGTH, contentLength + "");
+        props.setProperty(KEY_SEGMENTS, segments.size() + "");
+        segments.forEach(segment -> props.setProperty(
+            KEY_SEGMENT_PREFIX + segment.getIndex(),
+            segment.getStart() + "-" + segment.getEnd() + ":" + segment.getWritten()));
+
+        // write to temp file first, then swap in, so that a crash never leaves a half-written state behind
+        File stateFile = resolveStateFile(target);
+        File tmpFile = new File(stateFile.getAbsolutePath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            props.store(out, "partial download of " + target.getName());
+        }
+        try {
+            Files.move(tmpFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmpFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** the remote resource changed underneath us; this state must not be saved or resumed from */
+    protected synchronized void invalidate() {
+        invalid = true;
+        delete(target);
+    }
+
+    protected boolean isInvalid() { return invalid; }
+
+    protected boolean isComplete() { return segments.stream().allMatch(SaveFile.Segment::isComplete); }
+
+    protected long getWritten() { return segments.stream().mapToLong(SaveFile.Segment::getWritten).sum(); }
+
+    protected File getTarget() { return target; }
+
+    protected String getUrl() { return url; }
+
+    protected long getContentLength() { return contentLength; }
+
+    protected List<SaveFile.Segment> getSegments() { return segments; }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * sorted index of the files of an installation (relative paths, {@code /} as separator), built from its install
+ * manifest or else a single walk of the installation directory. Looking up files by path or path prefix is then
+ * done in memory, regardless of how many are looked up.
+ */
+final class FileIndex {
+    private final NavigableSet<String> paths = new TreeSet<>();
+
+    private FileIndex() { }
+
+    /** index of {@code paths}, such as those written by {@link ZipExtractor} */
+    protected static FileIndex of(Collection<String> paths) {
+        FileIndex index = new FileIndex();
+        paths.forEach(path -> index.paths.add(normalize(path)));
+        return index;
+    }
+
+    /** index of the files under {@code dir}, from its install manifest if any, else by walking it once */
+    protected static FileIndex of(File dir) throws IOException {
+        InstallManifest manifest = InstallManifest.load(dir);
+        if (manifest != null) { return of(manifest.getPaths()); }
+
+        FileIndex index = new FileIndex();
+        Path root = dir.toPath();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(file -> index.paths.add(normalize(root.relativize(file))));
+        }
+        return index;
+    }
+
+    protected boolean contains(String path) { return paths.contains(normalize(path)); }
+
+    /** first path (in sorting order) that starts with {@code prefix}; null if none */
+    protected String find(String prefix) {
+        prefix = normalize(prefix);
+        String found = paths.ceiling(prefix);
+        return found != null && found.startsWith(prefix) ? found : null;
+    }
+
+    /** all paths that start with {@code prefix} */
+    protected SortedSet<String> findAll(String prefix) {
+        prefix = normalize(prefix);
+        return Collections.unmodifiableSortedSet(paths.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+
+    protected int size() { return paths.size(); }
+
+    private static String normalize(Object path) { return path.toString().replace('\\', '/'); }
+}
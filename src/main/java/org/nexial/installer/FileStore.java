@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * content-addressed store of Nexial files: each distinct file is kept once, named by its SHA-256, and installations
+ * hard-link to it rather than holding a copy of their own. Since a zip only tells the CRC-32 and size of its entries,
+ * a file is found by those, as recorded along with its SHA-256 in the install manifests of the installations using
+ * the store (see {@link #learn(InstallManifest)}); the same trust incremental update puts in them.
+ * <p>
+ * A stored file is the same file in every installation linking to it, so it must never be modified in place (see
+ * {@link SnapshotBackup}). Should the file system not support hard links (or the store be on another one), the store
+ * turns itself off and installations get files of their own.
+ */
+final class FileStore {
+    private final File dir;
+    // crc32:size -> sha256
+    private final Map<String, String> known = new ConcurrentHashMap<>();
+    private volatile boolean linkable = true;
+
+    FileStore(File dir) { this.dir = dir; }
+
+    public File getDir() { return dir;}
+
+    public boolean isLinkable() { return linkable;}
+
+    /** remember the files of {@code manifest}, so that they can be found by CRC-32 and size */
+    protected void learn(InstallManifest manifest) {
+        for (String path : manifest.getPaths()) {
+            InstallManifest.Entry entry = manifest.get(path);
+            if (entry.getSha256() != null) { known.put(key(entry.getCrc(), entry.getSize()), entry.getSha256()); }
+        }
+    }
+
+    /** stored file of the given CRC-32 and size, or {@code null} if there is none */
+    protected Path find(long crc, long size) {
+        if (!linkable) { return null; }
+        String sha256 = known.get(key(crc, size));
+        if (sha256 == null) { return null; }
+
+        Path stored = resolve(sha256);
+        return Files.isRegularFile(stored) ? stored : null;
+    }
+
+    /** hard-link {@code stored} as {@code file}, which must not exist; false if the file system won't */
+    protected boolean link(Path stored, Path file) throws IOException {
+        if (!linkable) { return false; }
+        try {
+            Files.createLink(file, stored);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            disable(e);
+            return false;
+        }
+    }
+
+    /**
+     * keep {@code file} (just written, with the given CRC-32, size and SHA-256) in this store. Should the same
+     * content be stored already, such as by another worker extracting the same zip, {@code file} is replaced by a
+     * link to it
+     */
+    protected void add(Path file, long crc, long size, String sha256) throws IOException {
+        if (!linkable) { return; }
+
+        Path stored = resolve(sha256);
+        try {
+            Files.createDirectories(stored.getParent());
+            try {
+                Files.createLink(stored, file);
+            } catch (FileAlreadyExistsException e) {
+                Path temp = file.resolveSibling(file.getFileName() + ".nx~");
+                Files.deleteIfExists(temp);
+                Files.createLink(temp, stored);
+                Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+            known.put(key(crc, size), sha256);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            disable(e);
+        }
+    }
+
+    /** remove the stored files not in {@code referenced} (by SHA-256); returns the number of bytes freed */
+    protected long gc(Set<String> referenced) throws IOException {
+        if (!dir.isDirectory()) { return 0; }
+
+        long freed = 0;
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(dir.toPath(), 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String sha256 = file.getFileName().toString();
+                if (referenced.contains(sha256)) { continue; }
+
+                long size = Files.size(file);
+                Files.delete(file);
+                known.values().remove(sha256);
+                freed += size;
+                removed++;
+            }
+        }
+
+        if (removed > 0) { log("removed " + removed + " unused file(s) from " + dir + ", " + freed + " bytes freed"); }
+        return freed;
+    }
+
+    private Path resolve(String sha256) { return dir.toPath().resolve(sha256.substring(0, 2)).resolve(sha256); }
+
+    private void disable(Exception e) {
+        if (!linkable) { return; }
+        linkable = false;
+        error("Unable to hard-link files with " + dir + " (" + e.getMessage() + "); files will not be shared");
+    }
+
+    private static String key(long crc, long size) { return Long.toHexString(crc) + ":" + size; }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.commons.lang3.StringUtils;
+
+import static org.nexial.installer.Const.*;
+
+/**
+ * reads GitHub release listings (as in {@code https://api.github.com/repos/<owner>/<repo>/releases}). Of each release,
+ * only {@code tag_name} and the {@code browser_download_url} of its first asset are of interest; everything else
+ * (release notes, authors, reactions, other assets...) is skipped as the JSON stream is being read, so neither memory
+ * nor parse time grows with the size of the release notes.
+ * <p>
+ * GitHub paginates release listings; the {@code Link} response header points to the {@code next} and {@code last}
+ * pages. Once the page count is known, the remaining pages are fetched concurrently.
+ */
+final class GithubReleases {
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"([^\"]+)\"");
+    private static final Pattern PAGE_PATTERN = Pattern.compile("([?&])page=(\\d+)");
+    private static final int PAGE_SIZE = 100;
+
+    private GithubReleases() { }
+
+    /** ask for the largest page size GitHub allows, unless {@code url} already specifies one */
+    protected static String withPageSize(String url) {
+        if (StringUtils.contains(url, "per_page=")) { return url; }
+        return url + (StringUtils.contains(url, "?") ? "&" : "?") + "per_page=" + PAGE_SIZE;
+    }
+
+    /**
+     * read all releases, starting from the (already opened) first page and following the {@code Link} header to the
+     * rest. Returns the number of releases read.
+     */
+    protected static int readAll(URLConnection firstPage, Map<String, String> versions) throws IOException {
+        Map<String, String> links = parseLinks(firstPage.getHeaderField("Link"));
+
+        int releases;
+        try (InputStream in = firstPage.getInputStream()) { releases = read(in, versions); }
+
+        String next = links.get("next");
+        if (next == null) { return releases; }
+
+        int nextPage = parsePage(next);
+        int lastPage = parsePage(links.get("last"));
+        if (nextPage > 0 && lastPage >= nextPage) {
+            List<String> pageUrls = new ArrayList<>();
+            for (int page = nextPage; page <= Math.min(lastPage, MAX_CATALOG_PAGES); page++) {
+                pageUrls.add(withPage(next, page));
+            }
+            return releases + readConcurrently(pageUrls, versions);
+        }
+
+        // page count unknown; follow one page at a time
+        for (int page = 2; next != null && page <= MAX_CATALOG_PAGES; page++) {
+            URLConnection connection = new URL(next).openConnection();
+            next = parseLinks(connection.getHeaderField("Link")).get("next");
+            try (InputStream in = connection.getInputStream()) { releases += read(in, versions); }
+        }
+        return releases;
+    }
+
+    private static int readConcurrently(List<String> pageUrls, Map<String, String> versions) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(pageUrls.size(), CATALOG_FETCH_THREADS));
+        try {
+            List<Future<Map<String, String>>> pages = new ArrayList<>();
+            pageUrls.forEach(pageUrl -> pages.add(executor.submit(() -> {
+                Map<String, String> pageVersions = new LinkedHashMap<>();
+                try (InputStream in = new URL(pageUrl).openStream()) { read(in, pageVersions); }
+                return pageVersions;
+            })));
+
+            int releases = 0;
+            for (Future<Map<String, String>> page : pages) {
+                Map<String, String> pageVersions = page.get();
+                releases += pageVersions.size();
+                versions.putAll(pageVersions);
+            }
+            return releases;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("fetching of version list interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+            if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** parse a RFC 5988 {@code Link} header into {@code rel -> url} */
+    protected static Map<String, String> parseLinks(String linkHeader) {
+        Map<String, String> links = new HashMap<>();
+        if (StringUtils.isBlank(linkHeader)) { return links; }
+
+        Matcher matcher = LINK_PATTERN.matcher(linkHeader);
+        while (matcher.find()) { links.put(matcher.group(2), matcher.group(1)); }
+        return links;
+    }
+
+    protected static int parsePage(String url) {
+        if (url == null) { return -1; }
+        Matcher matcher = PAGE_PATTERN.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(2)) : -1;
+    }
+
+    protected static String withPage(String url, int page) {
+        return PAGE_PATTERN.matcher(url).replaceFirst("$1page=" + page);
+    }
+
+    /** read a page of releases from {@code in} into {@code versions}; returns the number of releases read */
+    protected static int read(InputStream in, Map<String, String> versions) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, UTF8))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new RuntimeException("Expected JSON content not found via ${" + PROP_VERSIONS_URL + "}");
+            }
+
+            int releases = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readRelease(reader, versions);
+                releases++;
+            }
+            reader.endArray();
+            return releases;
+        } catch (IllegalStateException e) {
+            throw new RuntimeException("Expected JSON structure not found via ${" + PROP_VERSIONS_URL + "}: " +
+                                       e.getMessage());
+        }
+    }
+
+    private static void readRelease(JsonReader reader, Map<String, String> versions) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+
+        String version = null;
+        String downloadUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("tag_name".equals(name)) {
+                version = nextString(reader);
+            } else if ("assets".equals(name)) {
+                downloadUrl = readFirstAssetUrl(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (version != null && downloadUrl != null) { versions.put(version, downloadUrl); }
+    }
+
+    private static String readFirstAssetUrl(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+
+        String downloadUrl = null;
+        boolean first = true;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (first && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("browser_download_url".equals(reader.nextName())) {
+                        downloadUrl = nextString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+            first = false;
+        }
+        reader.endArray();
+
+        return downloadUrl;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) { return reader.nextString(); }
+        reader.skipValue();
+        return null;
+    }
+}
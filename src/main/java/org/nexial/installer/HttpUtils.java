@@ -17,124 +17,438 @@
 package org.nexial.installer;
 
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import org.apache.commons.lang3.StringUtils;
 
+import static java.nio.file.StandardOpenOption.*;
 import static org.nexial.installer.Const.*;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
 
 public final class HttpUtils {
+    private static int bufferSize = BUFFER_SIZE;
+
     private HttpUtils() {}
 
-    protected static JsonElement getJson(String url) throws IOException {
-        try (InputStream is = new URL(url).openStream()) {
-            BufferedInputStream in = new BufferedInputStream(is);
-            String jsonText = readText(in);
+    /** size of the (reusable) buffer used to move data from network to disk; see {@link Const#PROP_IO_BUFFER_SIZE} */
+    protected static void setBufferSize(int size) { bufferSize = size < MIN_BUFFER_SIZE ? BUFFER_SIZE : size; }
+
+    protected static int getBufferSize() { return bufferSize; }
 
-            if (jsonText.startsWith("[") && jsonText.endsWith("]")) {
-                return GSON.fromJson(jsonText, JsonArray.class);
-            } else {
-                return GSON.fromJson(jsonText, JsonObject.class);
+    /**
+     * open {@code url} as a conditional GET, using the validators of a previous response (either may be
+     * {@code null}). Check {@link #isNotModified(URLConnection)} before reading the response.
+     */
+    protected static URLConnection openConditional(String url, String etag, String lastModified) throws IOException {
+        try {
+            URLConnection connection = new URL(url).openConnection();
+            if (StringUtils.isNotBlank(etag)) { connection.setRequestProperty("If-None-Match", etag); }
+            if (StringUtils.isNotBlank(lastModified)) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
             }
+            connection.connect();
+            return connection;
         } catch (UnknownHostException e) {
             throw toIOException(e);
         }
     }
 
-    protected static String getText(String url) throws IOException {
-        try (InputStream is = new URL(url).openStream()) {
-            return readText(new BufferedInputStream(is));
-        } catch (UnknownHostException e) {
-            throw toIOException(e);
+    protected static boolean isNotModified(URLConnection connection) throws IOException {
+        return connection instanceof HttpURLConnection &&
+               ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /** fail on an HTTP error response, such as 403 (rate limited) or 5xx, before its body is read */
+    protected static void checkResponse(URLConnection connection) throws IOException {
+        if (!(connection instanceof HttpURLConnection)) { return; }
+        HttpURLConnection http = (HttpURLConnection) connection;
+        int responseCode = http.getResponseCode();
+        if (responseCode < 200 || responseCode > 299) {
+            throw new IOException("HTTP " + responseCode + " " + StringUtils.defaultString(http.getResponseMessage()) +
+                                  " from " + http.getURL());
+        }
+    }
+
+    protected static String readText(URLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return readText(in, connection.getContentLengthLong());
         }
     }
 
     protected static SaveFile saveTo(String url, File targetFile, String progress) throws IOException {
-        try (InputStream is = new URL(url).openStream()) {
-            return save(new BufferedInputStream(is), targetFile, progress);
+        return saveTo(url, targetFile, progress, 1);
+    }
+
+    /**
+     * download {@code url} to {@code targetFile}. When the server advertises {@code Accept-Ranges: bytes} along with a
+     * known content length, the download is split into (up to) {@code segments} byte ranges, each fetched over its
+     * own connection and written directly into its slot of a preallocated target file. Otherwise (or if the server
+     * does not cooperate) we fall back to a single stream.
+     * <p>
+     * Ranged downloads are resumable: progress is tracked in a sidecar {@link DownloadState}, so that a dropped
+     * connection (in this run or a previous one) continues where it left off, as long as the ETag/Last-Modified of the
+     * remote resource confirms that it has not changed in the meantime.
+     */
+    protected static SaveFile saveTo(String url, File targetFile, String progress, int segments) throws IOException {
+        if (targetFile == null) { throw new IOException("invalid save-to location: null"); }
+
+        int attempt = 1;
+        while (true) {
+            try {
+                return attemptSaveTo(url, targetFile, progress, segments);
+            } catch (UnknownHostException e) {
+                throw toIOException(e);
+            } catch (IOException e) {
+                // without a resumable state, there's nothing to gain by retrying right away
+                if (attempt >= MAX_DOWNLOAD_ATTEMPTS || DownloadState.load(targetFile) == null) { throw e; }
+                attempt++;
+                error("download interrupted (" + e.getMessage() + "); resuming... (attempt " + attempt + " of " +
+                      MAX_DOWNLOAD_ATTEMPTS + ")");
+            }
         }
     }
 
+    private static SaveFile attemptSaveTo(String url, File targetFile, String progress, int segments)
+        throws IOException {
+        HttpURLConnection probe = null;
+        try {
+            probe = (HttpURLConnection) new URL(url).openConnection();
+            probe.setRequestMethod("HEAD");
+            if (probe.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                long contentLength = probe.getContentLengthLong();
+                boolean rangeSupported = "bytes".equalsIgnoreCase(probe.getHeaderField("Accept-Ranges"));
+                if (rangeSupported && contentLength > 0) {
+                    String etag = probe.getHeaderField("ETag");
+                    String lastModified = probe.getHeaderField("Last-Modified");
+
+                    DownloadState state = DownloadState.load(targetFile);
+                    if (state != null && state.isResumable(url, etag, lastModified, contentLength)) {
+                        log("resuming download of " + targetFile.getName() + " from " + state.getWritten() + " of " +
+                            contentLength + " bytes");
+                    } else {
+                        int segmentCount = (int) Math.max(1, Math.min(segments, contentLength / MIN_SEGMENT_SIZE));
+                        state = DownloadState.newInstance(targetFile, url, etag, lastModified, contentLength,
+                                                          segmentCount);
+                    }
+
+                    // use the post-redirect URL so that each segment doesn't need to be redirected again
+                    return saveSegmented(probe.getURL(), state, progress);
+                }
+            }
+        } catch (ClassCastException e) {
+            // not HTTP; single stream will do
+        } catch (IOException e) {
+            // HEAD not supported? single stream will do; but don't mask a download already underway
+            if (e instanceof UnknownHostException || DownloadState.load(targetFile) != null) { throw e; }
+        } finally {
+            if (probe != null) { probe.disconnect(); }
+        }
+
+        DownloadState.delete(targetFile);
+        try (InputStream in = new URL(url).openStream()) {
+            return save(in, targetFile, progress);
+        }
+    }
+
+    /**
+     * download {@code url} and feed its content to {@code consumer} <b>while</b> it is being downloaded: a background
+     * thread reads from the network into a bounded pipe (and tees to {@code teeTo}, if specified), while
+     * {@code consumer} reads from that pipe on the calling thread. Total time is thus close to the slower of the two,
+     * instead of their sum. Streamed downloads are neither segmented nor resumable.
+     */
+    protected static SaveFile pipeTo(String url, File teeTo, String progress, StreamConsumer consumer)
+        throws IOException {
+        if (consumer == null) { throw new IOException("invalid stream consumer: null"); }
+        if (teeTo != null) { teeTo.getParentFile().mkdirs(); }
+
+        long now = System.currentTimeMillis();
+        ProgressTracker tracker = new ProgressTracker(progress);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            URLConnection connection = new URL(url).openConnection();
+            long contentLength = connection.getContentLengthLong();
+
+            PipedInputStream pipeIn = new PipedInputStream(STREAM_PIPE_SIZE);
+            PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+
+            Future<Long> producer = executor.submit(() -> {
+                long totalBytesRead = 0;
+                try (InputStream in = new BufferedInputStream(connection.getInputStream());
+                     OutputStream tee = teeTo == null ? null : new FileOutputStream(teeTo)) {
+                    byte[] buffer = new byte[bufferSize];
+                    int bytesRead;
+                    while ((bytesRead = in.read(buffer)) != -1) {
+                        if (tee != null) { tee.write(buffer, 0, bytesRead); }
+                        pipeOut.write(buffer, 0, bytesRead);
+                        totalBytesRead += bytesRead;
+                        tracker.advance(bytesRead);
+                    }
+                } finally {
+                    // signal end-of-stream (or failure) to consumer
+                    pipeOut.close();
+                }
+                return totalBytesRead;
+            });
+
+            try (InputStream in = pipeIn) {
+                consumer.accept(in);
+                // consumer may not read till the end (e.g. zip central directory); drain so that producer can finish
+                byte[] buffer = new byte[bufferSize];
+                while (in.read(buffer) != -1) { }
+            } catch (IOException e) {
+                // download failure is the more likely root cause of a broken stream
+                if (producer.isDone()) { waitFor(producer); }
+                throw e;
+            }
+
+            long totalBytesRead = waitFor(producer);
+            tracker.done();
+
+            if (contentLength > 0 && totalBytesRead != contentLength) {
+                throw new IOException("expected " + contentLength + " bytes but received " + totalBytesRead);
+            }
+
+            SaveFile saveFile = new SaveFile();
+            saveFile.setFile(teeTo);
+            saveFile.setBytes(totalBytesRead);
+            saveFile.setElapsedTime(System.currentTimeMillis() - now);
+            return saveFile;
+        } catch (UnknownHostException e) {
+            throw toIOException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** consumes a stream as it arrives; see {@link #pipeTo(String, File, String, StreamConsumer)} */
+    protected interface StreamConsumer {
+        void accept(InputStream in) throws IOException;
+    }
+
     private static IOException toIOException(UnknownHostException e) {
         return new IOException("Host not found: " + e.getMessage() + ". Check your Internet connection and try again");
     }
 
-    private static String readText(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) { sb.append((char) cp); }
-        return sb.toString().trim();
+    /**
+     * read {@code in} as UTF-8 text. The bytes are read into a single buffer (sized by {@code sizeHint}, if known)
+     * and decoded in place, without intermediate chunk or copy allocations.
+     */
+    protected static String readText(InputStream in, long sizeHint) throws IOException {
+        if (in == null) { throw new IOException("input stream is null"); }
+
+        ReadableByteChannel channel = Channels.newChannel(in);
+        // +1 so that a correct hint never needs to grow the buffer just to detect end-of-stream
+        ByteBuffer buffer = ByteBuffer.allocate(sizeHint > 0 && sizeHint < Integer.MAX_VALUE / 2 ?
+                                                (int) sizeHint + 1 : bufferSize);
+        while (channel.read(buffer) != -1) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = bigger.put(buffer);
+            }
+        }
+
+        buffer.flip();
+        return UTF8.decode(buffer).toString();
     }
 
-    private static String readText(InputStream in) throws IOException {
+    /**
+     * save {@code in} to {@code saveTo}, letting {@link FileChannel#transferFrom} move the data (through its own
+     * cached transfer buffer) in chunks of {@link Const#SHOW_PROGRESS_PER_BYTE} so that progress can be shown.
+     */
+    protected static SaveFile save(InputStream in, File saveTo, String progress) throws IOException {
         if (in == null) { throw new IOException("input stream is null"); }
+        if (saveTo == null) { throw new IOException("invalid save-to location: null"); }
 
-        // ByteArrayOutputStream out = null;
+        // make sure directory exists
+        saveTo.getParentFile().mkdirs();
 
-        // try {
-        //     out = new ByteArrayOutputStream();
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        long now = System.currentTimeMillis();
+        long totalBytesRead = 0;
+        ProgressTracker tracker = new ProgressTracker(progress);
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-                buffer = new byte[BUFFER_SIZE];
+        try (FileChannel out = FileChannel.open(saveTo.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ReadableByteChannel source = Channels.newChannel(in);
+            long transferred;
+            while ((transferred = out.transferFrom(source, totalBytesRead, SHOW_PROGRESS_PER_BYTE)) > 0) {
+                totalBytesRead += transferred;
+                tracker.advance(transferred);
             }
 
-            return new String(out.toByteArray(), UTF8);
+            tracker.done();
+
+            SaveFile saveFile = new SaveFile();
+            saveFile.setFile(saveTo);
+            saveFile.setBytes(totalBytesRead);
+            saveFile.setElapsedTime(System.currentTimeMillis() - now);
+            return saveFile;
         }
-        // } finally {
-        //     if (out != null) {
-        //         out.flush();
-        //         out.close();
-        //     }
-        // }
     }
 
-    private static SaveFile save(InputStream in, File saveTo, String progress) throws IOException {
-        if (in == null) { throw new IOException("input stream is null"); }
-        if (saveTo == null) { throw new IOException("invalid save-to location: null"); }
+    private static SaveFile saveSegmented(URL url, DownloadState state, String progress) throws IOException {
+        File saveTo = state.getTarget();
 
         // make sure directory exists
         saveTo.getParentFile().mkdirs();
 
-        long now = System.currentTimeMillis();
-        int totalBytesRead = 0;
-        int showProgressAfter = SHOW_PROGRESS_PER_BYTE;
-        int totalShowProgress = 0;
+        List<SaveFile.Segment> segments = state.getSegments();
+        long contentLength = state.getContentLength();
+        long resumedBytes = state.getWritten();
 
-        try (FileOutputStream out = new FileOutputStream(saveTo)) {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        long now = System.currentTimeMillis();
+        ProgressTracker tracker = new ProgressTracker(progress);
+        ExecutorService executor = Executors.newFixedThreadPool(segments.size());
 
-                totalBytesRead += bytesRead;
-                if (totalBytesRead > showProgressAfter) {
-                    showProgressAfter += SHOW_PROGRESS_PER_BYTE;
+        try (RandomAccessFile file = new RandomAccessFile(saveTo, "rw")) {
+            // preallocate so that each segment can write into its own region of the file
+            if (file.length() != contentLength) { file.setLength(contentLength); }
+            FileChannel channel = file.getChannel();
+            state.save();
 
-                    if (progress != null && progress.length() > 0) {
-                        System.out.print(progress);
-                        totalShowProgress += 1;
+            List<Future<SaveFile.Segment>> futures = new ArrayList<>();
+            segments.stream()
+                    .filter(segment -> !segment.isComplete())
+                    .forEach(segment -> futures.add(
+                        executor.submit(() -> saveSegment(url, state, segment, channel, tracker))));
 
-                        if (totalShowProgress % LINE_WIDTH == 0) { System.out.println(); }
-                    }
+            IOException failure = null;
+            for (Future<SaveFile.Segment> future : futures) {
+                try {
+                    waitFor(future);
+                } catch (IOException e) {
+                    if (failure == null) { failure = e; }
                 }
+            }
 
-                buffer = new byte[BUFFER_SIZE];
+            tracker.done();
+
+            if (failure != null) {
+                // keep whatever we got so far for the next attempt
+                state.save();
+                throw failure;
             }
 
-            if (progress != null && progress.length() > 0) { System.out.println(); }
+            long totalBytes = state.getWritten();
+            if (totalBytes != contentLength) {
+                state.invalidate();
+                throw new IOException("expected " + contentLength + " bytes but received " + totalBytes);
+            }
+
+            DownloadState.delete(saveTo);
 
             SaveFile saveFile = new SaveFile();
             saveFile.setFile(saveTo);
-            saveFile.setBytes(totalBytesRead);
+            saveFile.setBytes(totalBytes);
+            saveFile.setResumedBytes(resumedBytes);
             saveFile.setElapsedTime(System.currentTimeMillis() - now);
+            saveFile.setSegments(segments);
             return saveFile;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SaveFile.Segment saveSegment(URL url, DownloadState state, SaveFile.Segment segment,
+                                                FileChannel channel, ProgressTracker tracker) throws IOException {
+        long now = System.currentTimeMillis();
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Range", "bytes=" + segment.getPosition() + "-" + segment.getEnd());
+        String ifRange = state.getIfRange();
+        if (ifRange != null) { connection.setRequestProperty("If-Range", ifRange); }
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+            connection.disconnect();
+            // 200 in response to If-Range means the file changed since we started; partial content is useless now
+            if (responseCode == HttpURLConnection.HTTP_OK) { state.invalidate(); }
+            throw new IOException("server did not honor byte range for segment #" + segment.getIndex() +
+                                  " (HTTP " + responseCode + ")");
+        }
+
+        long position = segment.getPosition();
+        long lastSaved = position;
+        // one buffer per segment, reused for every read
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (ReadableByteChannel in = Channels.newChannel(connection.getInputStream())) {
+            while (!segment.isComplete()) {
+                // never read past our range, even if the server sends more than asked
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), segment.getEnd() + 1 - position));
+                int bytesRead = in.read(buffer);
+                if (bytesRead == -1) { break; }
+
+                buffer.flip();
+                while (buffer.hasRemaining()) { position += channel.write(buffer, position); }
+                segment.setBytes(position - segment.getStart() - segment.getResumedBytes());
+                tracker.advance(bytesRead);
+
+                if (position - lastSaved >= DOWNLOAD_STATE_SAVE_INTERVAL) {
+                    state.save();
+                    lastSaved = position;
+                }
+            }
+        } finally {
+            segment.setElapsedTime(System.currentTimeMillis() - now);
+        }
+
+        if (!segment.isComplete()) {
+            throw new IOException("connection closed prematurely for segment #" + segment.getIndex());
+        }
+        return segment;
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("download interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnknownHostException) { throw toIOException((UnknownHostException) cause); }
+            if (cause instanceof IOException) { throw (IOException) cause; }
+            throw new IOException(cause);
+        }
+    }
+
+    /** prints {@code progress} once per {@link Const#SHOW_PROGRESS_PER_BYTE} bytes; safe for concurrent segments */
+    private static final class ProgressTracker {
+        private final String progress;
+        private long totalBytes;
+        private long showProgressAfter = SHOW_PROGRESS_PER_BYTE;
+        private int totalShowProgress;
+
+        private ProgressTracker(String progress) { this.progress = progress; }
+
+        private synchronized void advance(long bytes) {
+            totalBytes += bytes;
+            while (totalBytes > showProgressAfter) {
+                showProgressAfter += SHOW_PROGRESS_PER_BYTE;
+
+                if (progress != null && progress.length() > 0) {
+                    System.out.print(progress);
+                    totalShowProgress += 1;
+
+                    if (totalShowProgress % LINE_WIDTH == 0) { System.out.println(); }
+                }
+            }
+        }
+
+        private synchronized void done() {
+            if (progress != null && progress.length() > 0) { System.out.println(); }
         }
     }
 }
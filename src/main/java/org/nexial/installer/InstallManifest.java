@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.nexial.installer.Const.INSTALL_MANIFEST;
+import static org.nexial.installer.Const.UTF8;
+import static org.nexial.installer.OutputUtils.error;
+
+/**
+ * what the installer has written into a Nexial installation: for every file its size, CRC-32 (as recorded in the
+ * distro), SHA-256 and last modified time once written. Kept as {@link Const#INSTALL_MANIFEST} in the installation
+ * directory so that the next update can tell which files are unchanged without reading them, and so that the
+ * installation can be verified (see {@link InstallVerifier}).
+ * <p>
+ * Manifests written before SHA-256 was recorded have no such column; their entries have {@code null} SHA-256.
+ */
+final class InstallManifest {
+    private static final String HEADER = "# size\tcrc32\tsha256\tlastModified\tpath";
+    private static final String NO_SHA256 = "-";
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+    static final class Entry {
+        private final long size;
+        private final long crc;
+        private final String sha256;
+        private final long lastModified;
+
+        Entry(long size, long crc, String sha256, long lastModified) {
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() { return size; }
+
+        public long getCrc() { return crc; }
+
+        public String getSha256() { return sha256; }
+
+        public long getLastModified() { return lastModified; }
+    }
+
+    /** manifest of the installation at {@code installDir}, or {@code null} if none (or not readable) */
+    protected static InstallManifest load(File installDir) {
+        File file = new File(installDir, INSTALL_MANIFEST);
+        if (!file.isFile()) { return null; }
+
+        InstallManifest manifest = new InstallManifest();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith("#")) { continue; }
+                String[] fields = StringUtils.split(line, "\t", 5);
+                if (fields.length == 4) {
+                    // no sha256
+                    fields = new String[]{fields[0], fields[1], NO_SHA256, fields[2], fields[3]};
+                }
+                if (fields.length != 5) { throw new IOException("invalid line: " + line); }
+                manifest.put(fields[4],
+                             Long.parseLong(fields[0]),
+                             Long.parseLong(fields[1], 16),
+                             NO_SHA256.equals(fields[2]) ? null : fields[2],
+                             Long.parseLong(fields[3]));
+            }
+            return manifest;
+        } catch (IOException | NumberFormatException e) {
+            error("Unable to read install manifest " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    protected void save(File installDir) throws IOException {
+        Path file = new File(installDir, INSTALL_MANIFEST).toPath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, UTF8)) {
+            writer.write(HEADER + "\n");
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(value.size + "\t" + Long.toHexString(value.crc) + "\t" +
+                             Objects.toString(value.sha256, NO_SHA256) + "\t" + value.lastModified + "\t" +
+                             entry.getKey() + "\n");
+            }
+        }
+
+        try {
+            Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, file, REPLACE_EXISTING);
+        }
+    }
+
+    protected void put(String path, long size, long crc, String sha256, long lastModified) {
+        entries.put(path, new Entry(size, crc, sha256, lastModified));
+    }
+
+    protected Entry get(String path) { return entries.get(path); }
+
+    protected boolean contains(String path) { return entries.containsKey(path); }
+
+    /** paths of all files in this manifest, in order */
+    protected Set<String> getPaths() { return entries.keySet(); }
+
+    protected int size() { return entries.size(); }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * verify a Nexial installation against its {@link InstallManifest}. A file whose size and last modified time still
+ * match the manifest is taken as intact; only the files whose last modified time changed are read, in parallel, and
+ * their SHA-256 (CRC-32 for a manifest without SHA-256) compared. Files found intact after all have their last
+ * modified time updated in the manifest, so that they need not be read again next time.
+ */
+final class InstallVerifier {
+    private final File installDir;
+    private final int threads;
+    private final List<String> missing = new ArrayList<>();
+    private final List<String> modified = new ArrayList<>();
+    private int verified;
+    private int rehashed;
+    private long elapsedTime;
+
+    /** {@code threads} less than 1 means one per available processor */
+    InstallVerifier(File installDir, int threads) {
+        this.installDir = installDir;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /** true if every file in the install manifest is found intact */
+    protected boolean verify() throws IOException {
+        long startTime = System.currentTimeMillis();
+        InstallManifest manifest = InstallManifest.load(installDir);
+        if (manifest == null) {
+            throw new IOException("No install manifest found in " + installDir + "; reinstall to create one");
+        }
+
+        Path root = installDir.toPath();
+        List<String> changed = new ArrayList<>();
+        for (String path : manifest.getPaths()) {
+            InstallManifest.Entry entry = manifest.get(path);
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(root.resolve(path), BasicFileAttributes.class);
+                if (!attributes.isRegularFile() || attributes.size() != entry.getSize()) {
+                    modified.add(path);
+                } else if (attributes.lastModifiedTime().toMillis() == entry.getLastModified()) {
+                    verified++;
+                } else {
+                    changed.add(path);
+                }
+            } catch (NoSuchFileException e) {
+                missing.add(path);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            rehash(manifest, changed);
+            // next verification needn't read them again
+            manifest.save(installDir);
+        }
+
+        elapsedTime = System.currentTimeMillis() - startTime;
+        return isIntact();
+    }
+
+    public boolean isIntact() { return missing.isEmpty() && modified.isEmpty();}
+
+    public List<String> getMissing() { return missing;}
+
+    public List<String> getModified() { return modified;}
+
+    public int getVerified() { return verified;}
+
+    public int getRehashed() { return rehashed;}
+
+    public long getElapsedTime() { return elapsedTime;}
+
+    @Override
+    public String toString() {
+        return verified + " file(s) intact (" + rehashed + " read to confirm), " + modified.size() + " modified, " +
+               missing.size() + " missing in " + elapsedTime + " ms";
+    }
+
+    /** log the outcome, including every file found missing or modified */
+    protected void report() {
+        missing.forEach(path -> error("missing: " + new File(installDir, path)));
+        modified.forEach(path -> error("modified: " + new File(installDir, path)));
+        log("verified " + installDir + ": " + this);
+    }
+
+    private void rehash(InstallManifest manifest, List<String> changed) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, changed.size()));
+        try {
+            Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+            for (String path : changed) { futures.put(path, executor.submit(() -> isIntact(manifest, path))); }
+
+            for (Map.Entry<String, Future<Boolean>> future : futures.entrySet()) {
+                if (future.getValue().get()) {
+                    verified++;
+                    rehashed++;
+                } else {
+                    modified.add(future.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("verification of " + installDir + " interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+            if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** same content as recorded in {@code manifest}; if so, its current last modified time is recorded */
+    private boolean isIntact(InstallManifest manifest, String path) throws IOException {
+        InstallManifest.Entry entry = manifest.get(path);
+        Path file = installDir.toPath().resolve(path);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        MessageDigest digest = DistroCache.newSha256();
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[HttpUtils.getBufferSize()];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (entry.getSha256() == null) {
+                    crc.update(buffer, 0, read);
+                } else {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        boolean intact = entry.getSha256() == null ?
+                         crc.getValue() == entry.getCrc() :
+                         StringUtils.equals(entry.getSha256(), DistroCache.toHex(digest.digest()));
+        if (intact) { manifest.put(path, entry.getSize(), entry.getCrc(), entry.getSha256(), lastModified); }
+        return intact;
+    }
+}
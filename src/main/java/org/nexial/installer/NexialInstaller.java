@@ -16,32 +16,34 @@
 
 package org.nexial.installer;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import static java.io.File.separator;
 import static java.nio.channels.FileChannel.open;
@@ -89,14 +91,42 @@ public class NexialInstaller {
     private static final Properties props = initProps();
     private static File installTarget = resolveNexialHome();
     private static File backupTarget = resolveNexialHomeBackup();
+    // more than one installation directory to install into, each with its own backup; empty means installTarget
+    private static final List<InstallTarget> installTargets = new ArrayList<>();
     private static boolean keepDownloaded;
+    private static int downloadSegments = resolveDownloadSegments();
+    private static boolean streamInstall = BooleanUtils.toBoolean(props.getProperty(PROP_INSTALL_STREAM));
+    private static boolean incrementalInstall =
+        BooleanUtils.toBoolean(props.getProperty(PROP_INSTALL_INCREMENTAL));
+    private static boolean sideBySide = BooleanUtils.toBoolean(props.getProperty(PROP_INSTALL_SIDE_BY_SIDE));
+    private static boolean snapshotBackup =
+        BooleanUtils.toBoolean(StringUtils.defaultIfBlank(props.getProperty(PROP_BACKUP_SNAPSHOT), "true"));
+    private static int unzipThreads = NumberUtils.toInt(StringUtils.trim(props.getProperty(PROP_UNZIP_THREADS)));
+    private static final TreeOps treeOps =
+        new TreeOps(NumberUtils.toInt(StringUtils.trim(props.getProperty(PROP_TREE_THREADS))), ".");
 
     static final String NEXIAL_DIR = resolveNexialDirPath();
     static final String NEXIAL_INSTALL_DIR = StringUtils.appendIfMissing(NEXIAL_DIR, separator) + "install" + separator;
+    private static final Trash trash = new Trash(new File(NEXIAL_INSTALL_DIR, TRASH_DIR), treeOps);
+    private static final Snapshots snapshots = new Snapshots(new File(NEXIAL_DIR, SNAPSHOTS_DIR),
+                                                             resolveSnapshotRetain(),
+                                                             trash);
+    private static final VersionStore versionStore = new VersionStore(new File(NEXIAL_DIR, VERSIONS_DIR),
+                                                                      new File(NEXIAL_DIR, STORE_DIR),
+                                                                      treeOps,
+                                                                      trash);
     static final Path updateStatusFilePath = Paths.get(NEXIAL_INSTALL_DIR + "update.nx");
+    static final String NEXIAL_CACHE_DIR = StringUtils.appendIfMissing(NEXIAL_DIR, separator) + "cache" + separator;
+    private static final DistroCache distroCache = new DistroCache(new File(NEXIAL_CACHE_DIR), resolveCacheMaxSize());
+    private static final CatalogCache catalogCache = new CatalogCache(new File(NEXIAL_CACHE_DIR));
+    private static boolean offline = BooleanUtils.toBoolean(props.getProperty(PROP_VERSIONS_OFFLINE));
 
     private static int exitCode;
-    private static Map<String, String> availableVersions = new TreeMap<>();
+    private static VersionCatalog availableVersions;
+    // -daemon: exit() ends the current check only
+    private static boolean daemonMode;
+    // held while checking for (or upgrading to) a new version, so that only one process does so at a time
+    private static FileLock processLock;
 
     protected interface PlatformSpecificLocationHandler {
         File resolveForWindows(String base);
@@ -109,7 +139,7 @@ public class NexialInstaller {
     protected static void createInstallDirIfNotExist() {
         if (!Files.isDirectory(Paths.get(NEXIAL_INSTALL_DIR))) {
             try {
-                Files.createDirectory(Paths.get(NEXIAL_INSTALL_DIR));
+                Files.createDirectories(Paths.get(NEXIAL_INSTALL_DIR));
             } catch (IOException e) {
                 error(String.format("Could not create %s directory", NEXIAL_INSTALL_DIR));
             }
@@ -118,6 +148,7 @@ public class NexialInstaller {
 
     static {
         createInstallDirIfNotExist();
+        HttpUtils.setBufferSize(NumberUtils.toInt(StringUtils.trim(props.getProperty(PROP_IO_BUFFER_SIZE))));
     }
 
     public static void main(String[] args) {
@@ -149,18 +180,76 @@ public class NexialInstaller {
         }
     }
 
+    protected static int resolveDownloadSegments() {
+        String segments = StringUtils.trim(props.getProperty(PROP_DOWNLOAD_SEGMENTS));
+        if (!StringUtils.isNumeric(segments)) { return DEF_DOWNLOAD_SEGMENTS; }
+        return Math.max(1, Math.min(Integer.parseInt(segments), MAX_DOWNLOAD_SEGMENTS));
+    }
+
+    /** size cap of distro cache, in bytes */
+    protected static long resolveCacheMaxSize() {
+        String maxSize = StringUtils.trim(props.getProperty(PROP_CACHE_MAX_SIZE));
+        return NumberUtils.toLong(maxSize, DEF_CACHE_MAX_SIZE) * 1024 * 1024;
+    }
+
+    /** space that the installer may leave behind, in bytes */
+    protected static long resolveQuotaMaxSize() {
+        String maxSize = StringUtils.trim(props.getProperty(PROP_QUOTA_MAX_SIZE));
+        return NumberUtils.toLong(maxSize, DEF_QUOTA_MAX_SIZE) * 1024 * 1024;
+    }
+
+    protected static long resolveDaemonMinutes(String property, int defaultMinutes) {
+        return NumberUtils.toLong(StringUtils.trim(props.getProperty(property)), defaultMinutes) * 60 * 1000;
+    }
+
+    protected static int resolveSnapshotRetain() {
+        return NumberUtils.toInt(StringUtils.trim(props.getProperty(PROP_SNAPSHOT_RETAIN)), DEF_SNAPSHOT_RETAIN);
+    }
+
     protected static String readStdin() { return new Scanner(System.in).nextLine(); }
 
     protected static void showHelp() {
         showBanner();
-        System.out.println("USAGE: [ -list | [ -install [version] -target [path] -backup [path] [-keepDownloaded] ] ]");
+        System.out.println("USAGE: [ -list | [ -install [version] -target [path] -backup [path] [-keepDownloaded] " +
+                           "[-segments [count]] [-stream] [-incremental] [-sideBySide] ] [-offline] | " +
+                           "-verify [-target [path]] | -use [version] [-target [path] -backup [path]] | " +
+                           "-uninstall [version] | -rollback [version] [-target [path]] | -daemon | -publish [path] ]");
         System.out.println("\t-list    list available versions");
-        System.out.println("\t-install [latest|version]");
-        System.out.println("\t-target  [full path of where to install Nexial]");
+        System.out.println("\t-install [latest|version|major.minor.x]\n" +
+                           "\t         major.minor.x means the latest build of that series, e.g. 1.9.x");
+        System.out.println("\t-target  [full path of where to install Nexial], or @[file] listing one target per\n" +
+                           "\t         line as target[;backup]. Repeat to install into several targets at once");
         System.out.println("\t-backup  [full path of where to backup existing Nexial]\n" +
-                           "\t         Omit means no backup");
+                           "\t         Omit means no backup. Repeated, each backs up the -target of same position");
         System.out.println("\t-keepDownloaded indicates that the downloaded distro (zip) should be\n" +
                            "\t         kept in Nexial home");
+        System.out.println("\t-segments [number of concurrent connections to download Nexial distro]\n" +
+                           "\t         Omit means ${" + PROP_DOWNLOAD_SEGMENTS + "} (" + downloadSegments + ")");
+        System.out.println("\t-stream  extract Nexial distro while it is being downloaded; the zip is only saved\n" +
+                           "\t         when -keepDownloaded is also specified");
+        System.out.println("\t-incremental update current installation in place, only writing the files that\n" +
+                           "\t         changed since it was installed (no backup is made)");
+        System.out.println("\t-offline use the last successfully fetched version list instead of contacting\n" +
+                           "\t         ${" + PROP_VERSIONS_URL + "}");
+        System.out.println("\t-verify  check installed files (of -target, if specified) against the manifest\n" +
+                           "\t         written when they were installed");
+        System.out.println("\t-sideBySide install into " + versionStore.getDir() + ", next to the versions\n" +
+                           "\t         installed there already (sharing their identical files), and point\n" +
+                           "\t         -target to it");
+        System.out.println("\t-use     [version installed side by side] to point -target to");
+        System.out.println("\t-uninstall [version installed side by side] to remove, along with the files\n" +
+                           "\t         no other version shares");
+        System.out.println("\t-rollback [version] put back the last installation (of version, if specified)\n" +
+                           "\t         replaced by an install or upgrade; the last ${" + PROP_SNAPSHOT_RETAIN +
+                           "} (" + snapshots.getRetain() + ")\n" +
+                           "\t         are kept in " + snapshots.getDir());
+        System.out.println("\t-daemon  keep running, checking for (and staging) a new version of Nexial every\n" +
+                           "\t         ${" + PROP_DAEMON_INTERVAL + "} (" +
+                           resolveDaemonMinutes(PROP_DAEMON_INTERVAL, DEF_DAEMON_INTERVAL) / 60000 +
+                           ") minutes, at a time set by host name");
+        System.out.println("\t-publish [path] pack the Nexial versions (directories) in path, or in\n" +
+                           "\t         updateFromDir of install.conf, into one archive each and index them\n" +
+                           "\t         in " + SHARE_INDEX + ", for faster network install");
         System.out.println("NO PARAMETER: interactive installation menu.");
         System.out.println();
         System.out.println();
@@ -214,9 +303,12 @@ public class NexialInstaller {
         System.out.println("\t" + OPT_LIST + " (" + OPT_LIST_L + ")" +
                            "\t- list the Nexial versions currently available for download.");
         System.out.println(
-            "\t" + OPT_INSTALL + " (" + OPT_INSTALL_I + ")" + "\t- install a specific version or latest.");
+            "\t" + OPT_INSTALL + " (" + OPT_INSTALL_I + ")" +
+            "\t- install a specific version, latest or latest of a series (e.g. 1.9.x).");
         System.out.println(
             "\t" + OPT_CONFIGURE + " (" + OPT_CONFIGURE_C + ")" + "\t- customize installation location.");
+        System.out.println(
+            "\t" + OPT_VERIFY + " (" + OPT_VERIFY_V + ")" + "\t- verify the files of current installation.");
         System.out.println("\t" + OPT_QUIT + " (" + OPT_QUIT_Q + ")" + "\t- exit.");
         System.out.print("COMMAND: ");
     }
@@ -228,21 +320,65 @@ public class NexialInstaller {
             return;
         }
 
+        if (cmdlineOptions.isOffline()) { offline = true; }
+
         if (cmdlineOptions.isListOnly()) {
-            listAvailableVersions().keySet().forEach(System.out::println);
+            listAvailableVersions().getNames().forEach(System.out::println);
             return;
         }
 
         if (cmdlineOptions.isSilentUpdate()) {
+            collectGarbage();
             checkForUpdates();
             return;
         }
 
         if (cmdlineOptions.isUpgrade()) {
+            collectGarbage();
             upgradeNexial();
             return;
         }
 
+        if (cmdlineOptions.isPublish()) {
+            publish(cmdlineOptions.getPublishDir());
+            return;
+        }
+
+        if (cmdlineOptions.isDaemon()) {
+            runUpdateDaemon();
+            return;
+        }
+
+        if (cmdlineOptions.isVerify()) {
+            String target = cmdlineOptions.getInstallTarget();
+            verify(target == null ? installTarget : new File(target));
+            return;
+        }
+
+        if (cmdlineOptions.getUseVersion() != null) {
+            String target = cmdlineOptions.getInstallTarget();
+            String backup = cmdlineOptions.getBackupTarget();
+            collectGarbage();
+            useVersion(cmdlineOptions.getUseVersion(),
+                       target == null ? installTarget : new File(target),
+                       backup == null ? null : new File(backup));
+            return;
+        }
+
+        if (cmdlineOptions.isRollback()) {
+            String target = cmdlineOptions.getInstallTarget();
+            collectGarbage();
+            rollback(cmdlineOptions.getRollbackVersion(), target == null ? installTarget : new File(target));
+            return;
+        }
+
+        if (cmdlineOptions.getUninstallVersion() != null) {
+            String target = cmdlineOptions.getInstallTarget();
+            collectGarbage();
+            uninstall(cmdlineOptions.getUninstallVersion(), target == null ? installTarget : new File(target));
+            return;
+        }
+
         if (StringUtils.isBlank(cmdlineOptions.getVersion())) {
             error("No version specified.");
             exitCode = ERR_MISSING_VERSION;
@@ -275,7 +411,34 @@ public class NexialInstaller {
             backupTarget = null;
         }
 
+        // more than one target: each backed up to the backup directory of the same position, if any
+        installTargets.clear();
+        List<String> targets = cmdlineOptions.getInstallTargets();
+        if (targets.size() > 1) {
+            List<String> backups = cmdlineOptions.getBackupTargets();
+            for (int i = 0; i < targets.size(); i++) {
+                File target = new File(targets.get(i));
+                File backup = i < backups.size() && backups.get(i) != null ? new File(backups.get(i)) : null;
+                for (File dir : new File[]{target, backup}) {
+                    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                        error("Unable to create directory " + dir + ". " +
+                              "Please make sure you have permission to create this directory and try again.");
+                        exitCode = ERR_FAIL_CREATE_DIR;
+                        return;
+                    }
+                }
+                installTargets.add(new InstallTarget(target, backup));
+            }
+        }
+
         keepDownloaded = cmdlineOptions.isKeepDownloaded();
+        if (cmdlineOptions.getSegments() > 0) {
+            downloadSegments = Math.min(cmdlineOptions.getSegments(), MAX_DOWNLOAD_SEGMENTS);
+        }
+        if (cmdlineOptions.isStream()) { streamInstall = true; }
+        if (cmdlineOptions.isIncremental()) { incrementalInstall = true; }
+        if (cmdlineOptions.isSideBySide()) { sideBySide = true; }
+        collectGarbage();
         install(cmdlineOptions.getVersion());
     }
 
@@ -293,17 +456,24 @@ public class NexialInstaller {
         }
 
         if (OPT_SILENT_UPDATE.equalsIgnoreCase(command) || OPT_SILENT_UPDATE_SU.equalsIgnoreCase(command)) {
+            collectGarbage();
             checkForUpdates();
             exitCode = 0;
             return;
         }
 
         if (OPT_UPGRADE_NEXIAL.equalsIgnoreCase(command) || OPT_UPGRADE_NEXIAL_UN.equalsIgnoreCase(command)) {
+            collectGarbage();
             upgradeNexial();
             exitCode = 0;
             return;
         }
 
+        if (OPT_VERIFY.equalsIgnoreCase(command) || OPT_VERIFY_V.equalsIgnoreCase(command)) {
+            verify(installTarget);
+            return;
+        }
+
         if (OPT_INSTALL.equalsIgnoreCase(command) || OPT_INSTALL_I.equalsIgnoreCase(command)) {
             if (StringUtils.isBlank(version)) {
                 showError("Please specify either latest or a specific version to install");
@@ -315,6 +485,7 @@ public class NexialInstaller {
                 return;
             }
 
+            collectGarbage();
             if (VER_LATEST.equals(version)) {
                 installLatest();
             } else {
@@ -412,33 +583,84 @@ public class NexialInstaller {
     }
 
     protected static void showVersions() throws IOException {
-        if (availableVersions == null || availableVersions.size() < 1) { availableVersions = listAvailableVersions(); }
-        availableVersions.keySet().forEach(System.out::println);
+        if (availableVersions == null || availableVersions.isEmpty()) { availableVersions = listAvailableVersions(); }
+        availableVersions.getNames().forEach(System.out::println);
     }
 
-    protected static Map<String, String> listAvailableVersions() throws IOException {
+    protected static VersionCatalog listAvailableVersions() throws IOException {
         String versionUrl = props.getProperty(PROP_VERSIONS_URL);
         if (StringUtils.isBlank(versionUrl)) { throw new IOException("${" + PROP_VERSIONS_URL + "} not configured!"); }
 
-        Map<String, String> versions = new TreeMap<>(Comparator.reverseOrder());
+        if (offline) {
+            CatalogCache.Entry cached = catalogCache.load(versionUrl);
+            if (cached == null) { throw new IOException("No version list available for offline use"); }
+            log("offline: using version list fetched at " + LOG_DATE_FORMAT.format(new Date(cached.getFetchedAt())));
+            return VersionCatalog.of(cached.getVersions());
+        }
+
+        return fetchVersions(versionUrl, catalogCache);
+    }
 
-        // github json
-        if (StringUtils.contains(versionUrl, "github.com")) { return handleGithubUrl(versionUrl, versions); }
+    /**
+     * fetch the version list from {@code versionUrl}, unless unchanged since cached in {@code cache}. Should the fetch
+     * fail (e.g. rate limited, server error), the version list cached (if any) is used instead.
+     */
+    protected static VersionCatalog fetchVersions(String versionUrl, CatalogCache cache) throws IOException {
+        Map<String, String> versions = new LinkedHashMap<>();
+        CatalogCache.Entry cached = cache.load(versionUrl);
+
+        boolean isGithub = StringUtils.contains(versionUrl, "github.com");
+        String fetchUrl = isGithub ? GithubReleases.withPageSize(versionUrl) : versionUrl;
+
+        URLConnection connection;
+        try {
+            // new releases always show up on the first page, so a 304 there means the whole list is unchanged
+            connection = cached == null ?
+                         HttpUtils.openConditional(fetchUrl, null, null) :
+                         HttpUtils.openConditional(fetchUrl, cached.getEtag(), cached.getLastModified());
+            if (cached != null && HttpUtils.isNotModified(connection)) {
+                // nothing new; no need to download or parse again
+                return VersionCatalog.of(cached.getVersions());
+            }
+            HttpUtils.checkResponse(connection);
+
+            if (isGithub) {
+                // github json
+                handleGithubUrl(connection, versions);
+            } else if (StringUtils.endsWith(versionUrl, ".jsonl")) {
+                // support for JSON Lines (http://jsonlines.org/)
+                // useful for MinIO implementation
+                handleJsonLines(HttpUtils.readText(connection), versions);
+            } else {
+                // default treatment
+                // html treatment
+                handleHtmlUrl(versionUrl, HttpUtils.readText(connection), versions);
+            }
+        } catch (IOException e) {
+            if (cached == null) { throw e; }
+            error("Unable to fetch version list (" + e.getMessage() + "); using version list fetched at " +
+                  LOG_DATE_FORMAT.format(new Date(cached.getFetchedAt())));
+            return VersionCatalog.of(cached.getVersions());
+        }
 
-        // support for JSON Lines (http://jsonlines.org/)
-        // useful for MinIO implementation
-        if (StringUtils.endsWith(versionUrl, ".jsonl")) { return handleJsonLines(versionUrl, versions); }
+        try {
+            cache.save(versionUrl,
+                       connection.getHeaderField("ETag"),
+                       connection.getHeaderField("Last-Modified"),
+                       versions);
+        } catch (IOException e) {
+            error("Unable to cache version list: " + e.getMessage());
+        }
 
-        // default treatment
-        // html treatment
-        return handleHtmlUrl(versionUrl, versions);
+        return VersionCatalog.of(versions);
     }
 
     protected static void checkForUpdates() {
 
-        checkDuplicateProcess();
+        if (!checkDuplicateProcess()) { return; }
 
         String currentVersion = getCurrentVersionOfNexial();
+        if (currentVersion == null) { return; }
 
         boolean isNetworkInstall = false;
         Path updateCheckDir = null;
@@ -460,10 +682,19 @@ public class NexialInstaller {
 
         }
 
-        final Entry<String, String> latestVersionUrlMap = isNetworkInstall ? getLatestVersionMap(updateCheckDir)
-                                                                           : getLatestVersionMap();
+        // versions packed by -publish: read from one small index, and fetched as one archive each
+        final ShareIndex shareIndex = isNetworkInstall ? loadShareIndex(updateCheckDir) : null;
+        final VersionCatalog versions = shareIndex != null ? shareIndex.toCatalog() :
+                                        isNetworkInstall ? listStagedVersions(updateCheckDir) : getAvailableVersions();
+        if (versions == null) { return; }
+        if (versions.isEmpty()) {
+            error("Could not fetch available version list. Reason: No version present.");
+            exitCode = ERR_DOWNLOAD_FAILED;
+            return;
+        }
 
-        final String latestVersion = latestVersionUrlMap.getKey();
+        final Version latest = versions.latest();
+        final String latestVersion = latest.getName();
         log("Latest version of nexial is: " + latestVersion);
 
         if (!isUpdateStatusOld(latestVersion) || isLatestVersionStaged(latestVersion)) {
@@ -471,13 +702,14 @@ public class NexialInstaller {
             return;
         }
 
-        final int currentBuildNumber = getBuildNumberFromVersion.apply(currentVersion);
+        final Version current = Version.parse(currentVersion);
+        final int currentBuildNumber = current.getBuild();
         log("Current build number is: " + currentBuildNumber);
 
-        final int latestBuildNumber = getBuildNumberFromVersion.apply(latestVersion);
+        final int latestBuildNumber = latest.getBuild();
         log("Latest build number is: " + latestBuildNumber);
 
-        if (latestBuildNumber > currentBuildNumber) {
+        if (latest.isNewerThan(current)) {
             log("New version of Nexial-Core is available for download & install.");
 
             String status = "lastCheckedAt=" + System.currentTimeMillis() + "\n" +
@@ -486,7 +718,7 @@ public class NexialInstaller {
                             "currentBuildNumber=" + currentBuildNumber + "\n" +
                             "latestBuildNumber=" + latestBuildNumber + "\n" +
                             "isOnLatest=" + false + "\n" +
-                            "downloadUrl=" + latestVersionUrlMap.getValue() + "\n";
+                            "downloadUrl=" + versions.getLocation(latestVersion) + "\n";
 
             /* modify the installTarget to stage folder. */
             final Path stageDirLocation = Paths.get(NEXIAL_INSTALL_DIR + separator + latestVersion);
@@ -500,24 +732,39 @@ public class NexialInstaller {
 
             installTarget = stageDirLocation.toFile();
             backupTarget = null;
+            File backupTo = resolveNexialHomeBackup();
+
+            // current installation is backed up while the new version is staged; neither depends on the other
+            boolean copyFromNetwork = isNetworkInstall;
+            try (PhaseGraph phases = new PhaseGraph("silent update", 2)) {
+                PhaseGraph.Phase<Void> stage = phases.add("stage " + latestVersion, () -> {
+                    if (shareIndex != null) {
+                        stageFromShare(shareIndex, latestVersion, installTarget);
+                    } else if (copyFromNetwork) {
+                        FileUtils.copyDirectory(new File(versions.getLocation(latestVersion)), installTarget);
+                    } else {
+                        install(latestVersion);
+                        // failure already reported by install; stage directory must not be taken for the new version
+                        if (exitCode != 0) { throw new IOException("unable to install " + latestVersion); }
+                    }
+                    return null;
+                });
 
-            try {
-                if (isNetworkInstall) {
-                    FileUtils.copyDirectory(Paths.get(latestVersionUrlMap.getValue()).toFile(), installTarget);
-                } else {
-                    install(latestVersion);
-                }
-
-                backupTarget = resolveNexialHomeBackup();
-                log("resolved Nexial backup directory as " + backupTarget);
-
-                log("clean up previous backup directory (if exists)...");
-                if (backupTarget.exists()) { FileUtils.deleteQuietly(backupTarget); }
+                PhaseGraph.Phase<SnapshotBackup> backup = phases.add("backup", () -> {
+                    log("resolved Nexial backup directory as " + backupTo);
+                    log("clean up previous backup directory (if exists)...");
+                    trash.discard(backupTo.toPath());
 
-                Files.createDirectory(backupTarget.toPath());
+                    // files of current installation are not changed until upgrade; no need to copy them byte for byte
+                    log("backing up current Nexial installation...");
+                    return snapshotBackup ?
+                           SnapshotBackup.snapshot(resolveNexialHome(), backupTo) :
+                           SnapshotBackup.copy(resolveNexialHome(), backupTo);
+                });
 
-                log("backing up current Nexial installation (safe copy)...");
-                FileUtils.copyDirectory(resolveNexialHome(), backupTarget);
+                phases.await(stage);
+                log("backed up current Nexial installation: " + phases.await(backup));
+                backupTarget = backupTo;
                 status += "updateLocation=" + installTarget + "\n" +
                           "backupLocation=" + backupTarget + "\n" +
                           "downloadFinishedAt=" + System.currentTimeMillis();
@@ -529,46 +776,96 @@ public class NexialInstaller {
                 }
             } catch (IOException e) {
                 error("Could not finish stage-installation of new nexial version. Reason: " + e.getMessage());
+                if (exitCode == 0) { exitCode = ERR_DOWNLOAD_FAILED; }
+                try {
+                    trash.discard(stageDirLocation);
+                } catch (IOException e1) {
+                    error("Unable to remove stage directory " + stageDirLocation + ": " + e1.getMessage());
+                }
             }
         } else {
             log("Current installation of Nexial-Core is already on latest build.");
         }
     }
 
+    /** check the files of the installation at {@code installDir} against its install manifest */
+    protected static void verify(File installDir) {
+        log("verifying Nexial installation at " + installDir + "...");
+        InstallVerifier verifier = new InstallVerifier(installDir, 0);
+        try {
+            verifier.verify();
+            verifier.report();
+            if (verifier.isIntact()) {
+                exitCode = 0;
+            } else {
+                File fingerprint = new File(installDir, FINGERPRINT);
+                String version = fingerprint.isFile() ?
+                                 StringUtils.trim(FileUtils.readFileToString(fingerprint, UTF8)) : "[version]";
+                error("Nexial installation is not intact; reinstall, or repair it with " +
+                      "-install " + version + " -incremental");
+                exitCode = ERR_VERIFY_FAILED;
+            }
+        } catch (IOException e) {
+            error("Unable to verify Nexial installation: " + e.getMessage());
+            exitCode = ERR_VERIFY_FAILED;
+        }
+    }
+
+    /**
+     * check for updates every ${nexial.daemon.interval} minutes in this JVM, instead of a new JVM (-silentUpdate) per
+     * check; see {@link UpdateDaemon}. Checks are skipped, as with -silentUpdate, while another process is checking or
+     * upgrading.
+     */
+    protected static void runUpdateDaemon() {
+        long interval = resolveDaemonMinutes(PROP_DAEMON_INTERVAL, DEF_DAEMON_INTERVAL);
+        long retry = resolveDaemonMinutes(PROP_DAEMON_RETRY, DEF_DAEMON_RETRY);
+        String host = UpdateDaemon.resolveHost();
+        log("update daemon started on " + host + ": checking every " + (interval / 60000) + " minutes");
+
+        daemonMode = true;
+        UpdateDaemon daemon = new UpdateDaemon(() -> {
+            exitCode = 0;
+            // a previous check may have pointed these to its stage directory
+            installTarget = resolveNexialHome();
+            backupTarget = resolveNexialHomeBackup();
+            try {
+                collectGarbage();
+                checkForUpdates();
+            } finally {
+                releaseProcessLock();
+            }
+            return exitCode == 0;
+        }, interval, retry, host);
+
+        Thread thread = daemon.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     protected static void upgradeNexial() {
-        checkDuplicateProcess();
+        if (!checkDuplicateProcess()) { return; }
 
         Map<String, String> props = getUpdateStatusProperties(updateStatusFilePath);
         String updateLocation = props.get("updateLocation");
 
         if (Files.isDirectory(Paths.get(updateLocation))) {
             File currentNexial = resolveNexialHome();
-            FileUtils.deleteQuietly(currentNexial);
             try {
+                snapshots.keep(currentNexial.toPath());
 
-                final Path targetPath = currentNexial.toPath(); // target
-                final Path sourcePath = Paths.get(updateLocation); // source
-                Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
-                        throws IOException {
-                        Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir)));
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    @Override
-                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
-                        throws IOException {
-                        Files.copy(file, targetPath.resolve(sourcePath.relativize(file)));
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
+                // a rename when stage directory and Nexial home share a file system, else a parallel copy
+                TreeOps.Result moved = treeOps.move(Paths.get(updateLocation), currentNexial.toPath());
+                log("moved new nexial-core into place: " + moved);
+                moved.check("moving " + updateLocation + " to " + currentNexial);
 
-                FileUtils.deleteQuietly(sourcePath.toFile());
-                // FileUtils.moveDirectory(Paths.get(updateLocation).toFile(), currentNexial);
                 FileUtils.deleteQuietly(updateStatusFilePath.toFile());
             } catch (IOException e) {
-                error("Failed to update the nexial-core. Stage update directory is not available.");
+                error("Failed to update the nexial-core: " + e.getMessage());
+                return;
             }
             log("nexial-core successfully upgraded.");
         } else {
@@ -576,12 +873,57 @@ public class NexialInstaller {
         }
     }
 
+    /**
+     * clean up after previous runs before a command that adds to what the installer leaves behind; commands that only
+     * read (-help, -list, -verify) leave it be
+     */
+    protected static void collectGarbage() {
+        trash.emptyInBackground();
+        enforceDiskQuota();
+    }
+
+    /**
+     * keep what the installer leaves behind within ${nexial.quota.maxSize}: the least valuable goes first, from
+     * leftover downloads to the backup of current installation. Versions installed side by side are left alone, since
+     * there is no telling which installation directories point to them (see -uninstall)
+     */
+    protected static void enforceDiskQuota() {
+        DiskQuota quota = new DiskQuota(resolveQuotaMaxSize(), QUOTA_TIME_BOX);
+        if (!quota.isEnabled()) { return; }
+
+        quota.addEach(Paths.get(DOWNLOAD_DIR),
+                      path -> path.getFileName().toString().startsWith("nexial-core-v"),
+                      0,
+                      Files::deleteIfExists);
+
+        // except the one waiting to be upgraded to
+        String updateLocation = Files.isRegularFile(updateStatusFilePath) ?
+                                getUpdateStatusProperties(updateStatusFilePath).get("updateLocation") : null;
+        Path pendingUpdate = StringUtils.isBlank(updateLocation) ? null : Paths.get(updateLocation);
+        quota.addEach(Paths.get(NEXIAL_INSTALL_DIR),
+                      path -> isStageDirectory(path.toFile()) && !path.equals(pendingUpdate),
+                      1,
+                      trash::discard);
+
+        // can be downloaded again, unlike snapshots
+        quota.addEach(distroCache.getBlobDir().toPath(),
+                      Files::isRegularFile,
+                      2,
+                      path -> distroCache.remove(path.toFile()));
+        quota.addEach(snapshots.getDir().toPath(), path -> true, 3, snapshots::discard);
+
+        File backup = resolveNexialHomeBackup();
+        if (backup != null) { quota.add(backup.toPath(), 4, trash::discard); }
+
+        quota.enforce();
+    }
+
     private static void deleteOldStageDirs(Path stageDirLocation) throws IOException {
-        Files.list(Paths.get(NEXIAL_DIR, "install"))
-             .map(Path::toFile)
-             .filter(File::isDirectory)
-             .filter(NexialInstaller::isStageDirectory)
-             .forEach(FileUtils::deleteQuietly);
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get(NEXIAL_DIR, "install"))) {
+            for (Path path : paths) {
+                if (Files.isDirectory(path) && isStageDirectory(path.toFile())) { trash.discard(path); }
+            }
+        }
         Files.createDirectory(stageDirLocation);
     }
 
@@ -639,10 +981,10 @@ public class NexialInstaller {
         }
     }
 
-    protected static Entry<String, String> getLatestVersionMap() {
+    protected static VersionCatalog getAvailableVersions() {
         try {
             availableVersions = listAvailableVersions();
-            if (availableVersions.size() < 1) {
+            if (availableVersions.isEmpty()) {
                 error("Available version list is not available.");
                 exitCode = ERR_DOWNLOAD_FAILED;
                 exit(exitCode);
@@ -655,78 +997,89 @@ public class NexialInstaller {
             return null;
         }
 
-        return availableVersions.entrySet().stream().findFirst().get();
+        return availableVersions;
     }
 
-    protected static Entry<String, String> getLatestVersionMap(Path dir) {
+    /** index of the versions published on {@code dir}, or {@code null} if none (or unreadable) */
+    private static ShareIndex loadShareIndex(Path dir) {
         try {
-            int latestBuild = Files.list(dir)
-                                   .map(Path::toFile)
-                                   .filter(File::isDirectory)
-                                   .filter(NexialInstaller::isStageDirectory)
-                                   .map(File::getName)
-                                   .mapToInt(getBuildNumberFromVersion::apply)
-                                   .max().orElse(0);
-            if (latestBuild > 0) {
-                Optional<File> latestNexialDir =
-                    Files.list(dir)
-                         .map(Path::toFile)
-                         .filter(NexialInstaller::isStageDirectory)
-                         .filter(f -> getBuildNumberFromVersion.apply(f.getName()) == latestBuild)
-                         .findFirst();
-                if (latestNexialDir.isPresent()) {
-                    return new AbstractMap.SimpleEntry(latestNexialDir.get().getName(),
-                                                       latestNexialDir.get().getAbsolutePath());
-                } else {
-                    throw new IOException("No version present.");
-                }
-            } else {
-                throw new IOException("No version present.");
-            }
+            return ShareIndex.load(dir);
         } catch (IOException e) {
-            error("Could not fetch available version list. Reason: " + e.getMessage());
-            exitCode = ERR_DOWNLOAD_FAILED;
-            exit(exitCode);
+            error("Unable to read " + SHARE_INDEX + " of " + dir + "; listing it instead. Reason: " + e.getMessage());
             return null;
         }
     }
 
-    protected static final Function<String, Integer> getBuildNumberFromVersion =
-        (version) -> Integer.parseInt(version.split("-v")[1].split("_")[1]);
-
-    private static Map<String, String> handleGithubUrl(String versionUrl, Map<String, String> versions)
-        throws IOException {
-        JsonElement response = HttpUtils.getJson(versionUrl);
-        if (response == null || !response.isJsonArray()) {
-            throw new RuntimeException("Expected JSON content not found via ${" + PROP_VERSIONS_URL + "}");
+    private static void stageFromShare(ShareIndex shareIndex, String version, File stageTo) throws IOException {
+        log("copying " + version + " from " + shareIndex.getShare() + "...");
+        File archive = shareIndex.fetch(version, new File(DOWNLOAD_DIR, version + ".zip"));
+        try {
+            extractDistro(archive, stageTo, null);
+        } finally {
+            FileUtils.deleteQuietly(archive);
         }
+    }
 
-        JsonArray assets = (JsonArray) response;
-        if (assets.size() < 1) {
-            throw new RuntimeException("Expected JSON structure not found via ${" + PROP_VERSIONS_URL + "}");
+    /**
+     * pack the versions (directories) in {@code dir}, or in updateFromDir of install.conf if not specified, for
+     * network install; see {@link ShareIndex}
+     */
+    protected static void publish(String dir) {
+        if (dir == null) {
+            Path installConfigPath = Paths.get(NEXIAL_INSTALL_DIR, "install.conf");
+            if (Files.exists(installConfigPath)) {
+                dir = getUpdateStatusProperties(installConfigPath).get("updateFromDir");
+            }
+        }
+        if (StringUtils.isBlank(dir)) {
+            error("No directory to publish to; specify one, or updateFromDir in install.conf");
+            exitCode = ERR_ARGS_MISSING;
+            return;
         }
 
-        for (int i = 0; i < assets.size(); i++) {
-            JsonObject release = assets.get(i).getAsJsonObject();
-            if (!release.has("tag_name") || !release.has("assets")) { continue; }
-
-            String version = release.get("tag_name").getAsString();
+        try {
+            ShareIndex index = ShareIndex.publish(Paths.get(dir));
+            log("published " + index.size() + " version(s) in " + dir);
+        } catch (IOException e) {
+            error("Unable to publish " + dir + ": " + e.getMessage());
+            exitCode = ERR_PUBLISH_FAILED;
+        }
+    }
 
-            JsonArray thisAssets = release.get("assets").getAsJsonArray();
-            if (thisAssets == null || thisAssets.size() < 1) { continue; }
+    /** versions staged (as directories) in {@code dir}, for network install */
+    protected static VersionCatalog listStagedVersions(Path dir) {
+        try {
+            VersionCatalog versions = new VersionCatalog();
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir)) {
+                for (Path path : paths) {
+                    File file = path.toFile();
+                    if (file.isDirectory() && isStageDirectory(file)) {
+                        versions.put(file.getName(), file.getAbsolutePath());
+                    }
+                }
+            }
 
-            JsonObject firstAsset = thisAssets.get(0).getAsJsonObject();
-            if (!firstAsset.has("browser_download_url")) { continue; }
+            if (versions.isEmpty()) { throw new IOException("No version present."); }
+            return versions;
+        } catch (IOException e) {
+            error("Could not fetch available version list. Reason: " + e.getMessage());
+            exitCode = ERR_DOWNLOAD_FAILED;
+            exit(exitCode);
+            return null;
+        }
+    }
 
-            versions.put(version, firstAsset.get("browser_download_url").getAsString());
+    private static Map<String, String> handleGithubUrl(URLConnection connection, Map<String, String> versions)
+        throws IOException {
+        // stream through the response (and the rest of the pages); we only need a couple of fields per release
+        if (GithubReleases.readAll(connection, versions) < 1) {
+            throw new RuntimeException("Expected JSON structure not found via ${" + PROP_VERSIONS_URL + "}");
         }
 
         return versions;
     }
 
-    private static Map<String, String> handleHtmlUrl(String versionUrl, Map<String, String> versions)
-        throws IOException {
-        String html = HttpUtils.getText(versionUrl);
+    private static Map<String, String> handleHtmlUrl(String versionUrl, String html, Map<String, String> versions) {
         if (StringUtils.isBlank(html)) {
             throw new RuntimeException("Expected HTML content not found via ${" + PROP_VERSIONS_URL + "}");
         }
@@ -745,9 +1098,7 @@ public class NexialInstaller {
         return versions;
     }
 
-    private static Map<String, String> handleJsonLines(String versionUrl, Map<String, String> versions)
-        throws IOException {
-        String jsonlContent = HttpUtils.getText(versionUrl);
+    private static Map<String, String> handleJsonLines(String jsonlContent, Map<String, String> versions) {
         if (StringUtils.isBlank(jsonlContent)) {
             throw new RuntimeException("Expected JSON Lines content not found via ${" + PROP_VERSIONS_URL + "}");
         }
@@ -782,8 +1133,8 @@ public class NexialInstaller {
     }
 
     protected static String resolveDownloadUrl(String version) throws IOException {
-        if (availableVersions == null || availableVersions.size() < 1) { availableVersions = listAvailableVersions(); }
-        if (availableVersions.containsKey(version)) { return availableVersions.get(version); }
+        if (availableVersions == null || availableVersions.isEmpty()) { availableVersions = listAvailableVersions(); }
+        if (availableVersions.contains(version)) { return availableVersions.getLocation(version); }
         throw new IOException("Unable to resolve download URL for version " + version);
     }
 
@@ -795,152 +1146,486 @@ public class NexialInstaller {
             return;
         }
 
-        if (availableVersions == null || availableVersions.size() < 1) {
-            availableVersions = listAvailableVersions();
-            if (availableVersions == null || availableVersions.size() < 1) {
-                error("No versions available for Nexial");
-                exitCode = ERR_DOWNLOAD_FAILED;
+        if (installTarget == null) { throw new IOException("unable to resolve Nexial installation directory"); }
+        List<InstallTarget> targets = installTargets.isEmpty() ?
+                                      Collections.singletonList(new InstallTarget(installTarget, backupTarget)) :
+                                      new ArrayList<>(installTargets);
+
+        boolean stream = streamInstall && targets.size() == 1 && !sideBySide;
+        if (streamInstall && !stream) {
+            log("streamed install is not supported for multiple targets or side-by-side install; " +
+                "downloading Nexial distro first");
+        }
+
+        // version is resolved and distro downloaded once, while installation directories and backups are prepared
+        exitCode = 0;
+        String requested = version.trim();
+        try (PhaseGraph shared = new PhaseGraph("install", 2)) {
+            PhaseGraph.Phase<ResolvedDistro> resolve = shared.add("resolve version", () -> resolveDistro(requested));
+            PhaseGraph.Phase<File> download = stream ? null : shared.add("download", () -> {
+                // nothing to download for a version installed side by side already
+                if (sideBySide && versionStore.contains(resolve.get().version)) { return null; }
+                return download(resolve.get());
+            }, resolve);
+
+            if (targets.size() > 1 && !sideBySide) {
+                installAll(targets, shared, resolve, download);
                 return;
             }
+
+            try {
+                if (sideBySide) {
+                    installSideBySide(targets, resolve, download);
+                } else {
+                    installInto(targets.get(0), "install", resolve, download, false);
+                }
+            } catch (IOException e) {
+                // reported by the failing phase
+                if (exitCode != 0) { return; }
+                throw e;
+            }
         }
+    }
 
-        version = version.trim();
-        if (VER_LATEST.equals(version)) {
-            version = availableVersions.keySet().iterator().next();
-        } else {
-            if (!availableVersions.containsKey(version)) {
-                error("Specified version not found or not available");
-                exitCode = ERR_MISSING_VERSION;
-                return;
+    /** where to install Nexial, and where to back up the installation found there ({@code null} for no backup) */
+    private static final class InstallTarget {
+        private final File dir;
+        private final File backup;
+
+        private InstallTarget(File dir, File backup) {
+            this.dir = dir;
+            this.backup = backup;
+        }
+
+        @Override
+        public String toString() { return dir.toString(); }
+    }
+
+    /**
+     * install into {@code target}, staged, backed up and spot checked on its own; {@code resolve} and {@code download}
+     * are shared by all targets ({@code download} is null for streamed install). Returns the version installed
+     */
+    private static String installInto(InstallTarget target,
+                                      String name,
+                                      PhaseGraph.Phase<ResolvedDistro> resolve,
+                                      PhaseGraph.Phase<File> download,
+                                      boolean sharedDistro) throws IOException {
+        log("resolved Nexial installation directory as " + target.dir);
+
+        // full installation is staged next to target, and only swapped in once complete
+        StagedInstall staged = new StagedInstall(target.dir, target.backup, treeOps, trash);
+        staged.setSnapshots(snapshots);
+        staged.recover();
+
+        // incremental update needs to know what is currently installed
+        InstallManifest installed = null;
+        if (incrementalInstall) {
+            if (download == null) {
+                log("incremental update is not supported for streamed install; performing full installation");
+            } else {
+                installed = InstallManifest.load(target.dir);
+                if (installed == null) {
+                    log("no install manifest found in " + target.dir + "; performing full installation");
+                } else if (Files.isSymbolicLink(target.dir.toPath())) {
+                    // updating in place would change that version
+                    log(target.dir + " points to a version installed side by side; performing full installation");
+                    installed = null;
+                }
             }
         }
+        InstallManifest current = installed;
+
+        // extraction waits for both distro and installation directory. Should any phase fail, the others are stopped
+        // before staged files are removed
+        String version;
+        try (PhaseGraph phases = new PhaseGraph(name, INSTALL_PHASE_THREADS)) {
+            PhaseGraph.Phase<File> prepare = phases.add("prepare installation directory", () ->
+                current == null ? staged.prepare() : target.dir);
+            PhaseGraph.Phase<Void> backup = phases.add("prepare backup", () -> {
+                // nothing to back up when updating in place
+                if (current == null) { staged.prepareBackup(); }
+                return null;
+            }, resolve, prepare);
 
-        String downloadFrom = resolveDownloadUrl(version);
-        File downloadTo = resolveDownloadLocation(version);
+            PhaseGraph.Phase<File> extract;
+            if (download == null) {
+                extract = phases.add("download and extract", () ->
+                    downloadAndExtract(resolve.get(), prepare.get()), resolve, prepare);
+            } else {
+                extract = phases.add("extract", () -> {
+                    if (current != null && target.backup != null) {
+                        log("installation is updated in place; skipping backup to " + target.backup);
+                    }
+                    extractDistro(download.get(), prepare.get(), current);
+                    return download.get();
+                }, download, prepare);
+            }
 
-        log("downloading Nexial distro to " + downloadTo);
+            PhaseGraph.Phase<Void> finish = phases.add("finish", () -> {
+                finishInstall(resolve.get().version, extract.get(), prepare.get(), sharedDistro);
+                return null;
+            }, extract);
+
+            phases.await(finish);
+            phases.await(backup);
+            if (installed == null) { staged.commit(); }
+            version = resolve.get().version;
+        } finally {
+            // nothing to undo once committed
+            if (installed == null) { staged.abort(); }
+        }
 
-        SaveFile saveFile = HttpUtils.saveTo(downloadFrom, downloadTo, ".");
-        if (saveFile == null) {
-            error("unable to download Nexial distro from " + downloadFrom);
-            exitCode = ERR_DOWNLOAD_FAILED;
-            return;
+        // spot check
+        log("spot checks...");
+        spotChecks(target.dir);
+
+        log("installation for " + version + " completed");
+        return version;
+    }
+
+    /** install into all {@code targets} at the same time, from the same distro; each succeeds or fails on its own */
+    private static void installAll(List<InstallTarget> targets,
+                                   PhaseGraph shared,
+                                   PhaseGraph.Phase<ResolvedDistro> resolve,
+                                   PhaseGraph.Phase<File> download) throws IOException {
+        log("installing into " + targets.size() + " targets...");
+        Map<InstallTarget, Future<String>> results = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(targets.size(), MAX_PARALLEL_TARGETS));
+        try {
+            for (InstallTarget target : targets) {
+                String name = "install " + target.dir.getName();
+                results.put(target, executor.submit(() -> installInto(target, name, resolve, download, true)));
+            }
+
+            List<String> summary = new ArrayList<>();
+            int failed = 0;
+            for (Map.Entry<InstallTarget, Future<String>> result : results.entrySet()) {
+                try {
+                    summary.add("installed " + result.getValue().get() + " into " + result.getKey());
+                } catch (ExecutionException e) {
+                    failed++;
+                    summary.add("FAILED to install into " + result.getKey() + ": " + e.getCause().getMessage());
+                }
+            }
+
+            log("installed into " + (targets.size() - failed) + " of " + targets.size() + " targets");
+            summary.forEach(line -> log("\t" + line));
+
+            // same failure for all (such as download): keep its exit code
+            if (failed > 0 && (failed < targets.size() || exitCode == 0)) { exitCode = ERR_INSTALL_TARGETS_FAILED; }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("install interrupted");
+        } finally {
+            executor.shutdownNow();
         }
 
-        log("downloaded Nexial distro in approximately " + (saveFile.getElapsedTime() / 1000) + " seconds");
+        // each target has its own copy of distro, if it was to be kept
+        try {
+            File downloaded = shared.await(download);
+            if (!distroCache.contains(downloaded)) { FileUtils.deleteQuietly(downloaded); }
+        } catch (IOException e) {
+            // reported above
+        }
+    }
 
-        File downloaded = saveFile.getFile();
+    /**
+     * install into {@link #versionStore}, next to the versions installed there already (unless installed there
+     * already), then point {@code targets} to it
+     */
+    private static void installSideBySide(List<InstallTarget> targets,
+                                          PhaseGraph.Phase<ResolvedDistro> resolve,
+                                          PhaseGraph.Phase<File> download) throws IOException {
+        String version;
+        try (PhaseGraph phases = new PhaseGraph("install side by side", INSTALL_PHASE_THREADS)) {
+            PhaseGraph.Phase<File> stage = phases.add("prepare version directory", () -> {
+                String resolved = resolve.get().version;
+                return versionStore.contains(resolved) ? null : versionStore.stage(resolved);
+            }, resolve);
+            PhaseGraph.Phase<File> extract = phases.add("extract", () -> {
+                File staged = stage.get();
+                if (staged == null) {
+                    log("Nexial " + resolve.get().version + " is installed in " + versionStore.getDir() + " already");
+                    return null;
+                }
 
-        if (!downloaded.canRead() || downloaded.length() != saveFile.getBytes()) {
-            error("downloaded Nexial distro cannot be read or was not saved correctly");
-            exitCode = ERR_DOWNLOAD_SAVE_FAILED;
+                log("unzipping Nexial distro to " + staged + "...");
+                ZipExtractor extractor = new ZipExtractor(download.get(), staged, unzipThreads);
+                extractor.setStore(versionStore.getFiles());
+                extractor.extract().save(staged);
+                log("unzipped " + extractor.getWritten() + " file(s); " +
+                    extractor.getLinked() + " file(s) shared with other versions");
+                finishInstall(resolve.get().version, download.get(), staged, false);
+                return staged;
+            }, download, stage);
+
+            File staged = phases.await(extract);
+            version = resolve.get().version;
+            if (staged != null) { versionStore.commit(version, staged); }
+        }
+
+        for (InstallTarget target : targets) {
+            useVersion(version, target.dir, target.backup);
+            if (exitCode != 0) { return; }
+
+            log("spot checks...");
+            spotChecks(target.dir);
+        }
+
+        log("installation for " + version + " completed");
+    }
+
+    /** point {@code target} to {@code version}, installed side by side */
+    protected static void useVersion(String version, File target, File backup) {
+        long startTime = System.currentTimeMillis();
+        try {
+            versionStore.use(version, target, backup);
+            log("switched " + target + " to Nexial " + version + " in " +
+                (System.currentTimeMillis() - startTime) + " ms");
+            exitCode = 0;
+        } catch (IOException e) {
+            error("Unable to switch " + target + " to Nexial " + version + ": " + e.getMessage());
+            List<String> installed = versionStore.list();
+            if (!installed.isEmpty()) { log("versions installed side by side: " + String.join(", ", installed)); }
+            exitCode = ERR_VERSION_SWITCH_FAILED;
+        }
+    }
+
+    /** put back the last installation of {@code version} (or the last one, if not specified) replaced in target */
+    protected static void rollback(String version, File target) {
+        String snapshot = snapshots.find(version);
+        if (snapshot == null) {
+            error("No snapshot " + (StringUtils.isBlank(version) ? "" : "of " + version + " ") + "found in " +
+                  snapshots.getDir());
+            List<String> kept = snapshots.list();
+            if (!kept.isEmpty()) { log("snapshots available: " + String.join(", ", kept)); }
+            exitCode = ERR_ROLLBACK_FAILED;
             return;
         }
 
-        if (installTarget == null) { throw new IOException("unable to resolve Nexial installation directory"); }
-        log("resolved Nexial installation directory as " + installTarget);
-        if (!installTarget.exists()) {
-            log("Nexial installation directory not found; creating...");
-            if (!installTarget.mkdirs()) { throw new IOException("unable to create Nexial installation directory"); }
+        long startTime = System.currentTimeMillis();
+        try {
+            snapshots.restore(snapshot, target);
+            log("rolled back " + target + " to " + snapshot + " in " +
+                (System.currentTimeMillis() - startTime) + " ms");
+            exitCode = 0;
+        } catch (IOException e) {
+            error("Unable to roll back " + target + " to " + snapshot + ": " + e.getMessage());
+            exitCode = ERR_ROLLBACK_FAILED;
         }
+    }
 
-        if (backupTarget != null) {
-            log("resolved Nexial backup directory as " + backupTarget);
-            // remove BACKUP directory
-            log("clean up previous backup directory (if exists)...");
-            try {
-                FileUtils.deleteDirectory(backupTarget);
-                log("backing up current Nexial installation...");
-                FileUtils.moveDirectory(installTarget, backupTarget);
-            } catch (IOException e) {
-                System.err.println("\n!!! ERROR !!!");
-                System.err.println("UNABLE TO DELETE BACKUP DIRECTORY '" + backupTarget + "'");
-                System.err.println("EXISTING NEXIAL INSTALLATION DIRECTORY WILL NOT BE BACKED UP...\n");
+    /** remove {@code version}, installed side by side, unless {@code target} points to it */
+    protected static void uninstall(String version, File target) {
+        try {
+            if (versionStore.getDir(version).getName().equals(versionStore.current(target))) {
+                error("Nexial " + version + " is in use by " + target + "; switch it to another version first");
+                exitCode = ERR_VERSION_SWITCH_FAILED;
+                return;
             }
-        } else {
-            // need to remove current install directory before we can unzip into it
-            log("delete Nexial installation directory");
-            try {
-                FileUtils.deleteDirectory(installTarget);
-            } catch (IOException e) {
-                System.err.println("\n!!! ERROR !!!");
-                System.err.println("UNABLE TO DELETE NEXIAL INSTALLATION DIRECTORY '" + installTarget + "'");
-                System.err.println("MAKE SURE THIS DIRECTORY IS NOT CURRENTLY OPEN (Explorer or CMD, for example),");
-                System.err.println("AND NONE OF ITS FILES ARE OPENED BY OTHER PROGRAMS (Excel, for example).");
-                throw e;
+
+            versionStore.remove(version);
+            exitCode = 0;
+        } catch (IOException e) {
+            error("Unable to remove Nexial " + version + ": " + e.getMessage());
+            exitCode = ERR_VERSION_SWITCH_FAILED;
+        }
+    }
+
+    /** version to install, and its distro if already in distro cache */
+    private static final class ResolvedDistro {
+        private final String version;
+        private final File cached;
+
+        private ResolvedDistro(String version, File cached) {
+            this.version = version;
+            this.cached = cached;
+        }
+    }
+
+    /** resolve {@code version} (latest, a specific version or latest of a series) against available versions */
+    private static ResolvedDistro resolveDistro(String version) throws IOException {
+        // a specific version that is already cached needs no network at all
+        File cached = VersionCatalog.isVersionRange(version) ? null : distroCache.lookup(version);
+        if (cached != null) { return new ResolvedDistro(version, cached); }
+
+        if (availableVersions == null || availableVersions.isEmpty()) {
+            availableVersions = listAvailableVersions();
+            if (availableVersions == null || availableVersions.isEmpty()) {
+                throw failInstall(ERR_DOWNLOAD_FAILED, "No versions available for Nexial");
             }
         }
 
-        if (!installTarget.mkdirs()) { throw new IOException("unable to recreate Nexial installation directory"); }
+        if (!VersionCatalog.isVersionRange(version)) {
+            if (!availableVersions.contains(version)) {
+                throw failInstall(ERR_MISSING_VERSION, "Specified version not found or not available");
+            }
+            return new ResolvedDistro(version, null);
+        }
 
-        // unzip distro
-        log("unzipping Nexial distro to installation directory...");
-        unzip(downloaded, installTarget);
+        // latest, or latest of a series such as 1.9.x
+        Version resolved = availableVersions.resolve(version);
+        if (resolved == null) { throw failInstall(ERR_MISSING_VERSION, "No version matching " + version + " found"); }
+        return new ResolvedDistro(resolved.getName(), distroCache.lookup(resolved.getName()));
+    }
+
+    /** distro of {@code distro}, from distro cache or else downloaded (and then cached) */
+    private static File download(ResolvedDistro distro) throws IOException {
+        if (distro.cached != null) {
+            log("found Nexial distro in distro cache: " + distro.cached);
+            return distro.cached;
+        }
 
-        // fix exec permission
-        log("setting permission bits on batch files...");
-        FileUtils.listFiles(installTarget, new String[]{"sh", "bash", "bat", "cmd"}, true)
-                 .forEach(file -> file.setExecutable(true, false));
+        String downloadFrom = resolveDownloadUrl(distro.version);
+        File downloadTo = resolveDownloadLocation(distro.version);
+        log("downloading Nexial distro to " + downloadTo);
+
+        SaveFile saveFile = HttpUtils.saveTo(downloadFrom, downloadTo, ".", downloadSegments);
+        if (saveFile == null) {
+            throw failInstall(ERR_DOWNLOAD_FAILED, "unable to download Nexial distro from " + downloadFrom);
+        }
+
+        log("downloaded Nexial distro in approximately " + (saveFile.getElapsedTime() / 1000) + " seconds " +
+            "(" + saveFile.getThroughput() + ")");
+        if (saveFile.isSegmented()) { saveFile.getSegments().forEach(segment -> log("\t" + segment)); }
+
+        File downloaded = saveFile.getFile();
+        if (!downloaded.canRead() || downloaded.length() != saveFile.getBytes()) {
+            throw failInstall(ERR_DOWNLOAD_SAVE_FAILED,
+                              "downloaded Nexial distro cannot be read or was not saved correctly");
+        }
 
+        return distroCache.store(distro.version, downloaded);
+    }
+
+    /** extract distro into {@code installTo} while it is being downloaded; returns the distro if it was kept */
+    private static File downloadAndExtract(ResolvedDistro distro, File installTo) throws IOException {
+        if (distro.cached != null) {
+            log("found Nexial distro in distro cache: " + distro.cached);
+            extractDistro(distro.cached, installTo, null);
+            return distro.cached;
+        }
+
+        String downloadFrom = resolveDownloadUrl(distro.version);
+        File downloadTo = resolveDownloadLocation(distro.version);
+        log("downloading and unzipping Nexial distro to " + installTo + "...");
+        if (keepDownloaded) { log("saving Nexial distro to " + downloadTo); }
+
+        SaveFile saveFile = HttpUtils.pipeTo(downloadFrom, keepDownloaded ? downloadTo : null, ".",
+                                             in -> unzip(in, installTo));
+        log("downloaded and unzipped Nexial distro in approximately " + (saveFile.getElapsedTime() / 1000) +
+            " seconds (" + saveFile.getThroughput() + ")");
+        return distroCache.store(distro.version, saveFile.getFile());
+    }
+
+    /**
+     * fingerprint the installation, and keep or remove the distro as requested. A distro shared by several targets
+     * is copied rather than moved, and left for the caller to remove
+     */
+    private static void finishInstall(String version, File downloaded, File installTo, boolean sharedDistro)
+        throws IOException {
         // add fingerprint
         log("adding fingerprint file...");
-        createFingerprint(version, installTarget);
+        createFingerprint(version, installTo);
+
+        // remove distro (streamed install only has one if it was asked to be kept); cached distro stays in cache
+        if (downloaded != null) {
+            if (keepDownloaded) {
+                log("preserve Nexial distro (zip) to " + installTo);
+                if (distroCache.contains(downloaded)) {
+                    FileUtils.copyFile(downloaded, new File(installTo, resolveDownloadLocation(version).getName()));
+                } else if (sharedDistro) {
+                    FileUtils.copyFileToDirectory(downloaded, installTo);
+                } else {
+                    FileUtils.moveFileToDirectory(downloaded, installTo, false);
+                }
+            } else if (!sharedDistro && !distroCache.contains(downloaded)) {
+                log("remove Nexial distro (zip)...");
+                FileUtils.deleteQuietly(downloaded);
+            }
+        }
+    }
 
-        // remove distro
-        if (!keepDownloaded) {
-            log("remove Nexial distro (zip)...");
-            FileUtils.deleteQuietly(downloaded);
+    /** report an install failure (as {@code exitCode}), to be thrown by the failing install phase */
+    private static IOException failInstall(int exitCode, String message) {
+        error(message);
+        NexialInstaller.exitCode = exitCode;
+        return new IOException(message);
+    }
+
+    /**
+     * extract {@code distro} into {@code installTo}: a staging directory for a fresh install, or if {@code installed}
+     * is specified, the current installation to update in place
+     */
+    protected static void extractDistro(File distro, File installTo, InstallManifest installed) throws IOException {
+        if (installed == null) {
+            log("unzipping Nexial distro to " + installTo + "...");
         } else {
-            log("preserve Nexial distro (zip) to " + installTarget);
-            FileUtils.moveFileToDirectory(downloaded, installTarget, false);
+            log("updating Nexial installation directory " + installTo + " in place...");
         }
 
-        // spot check
-        log("spot checks...");
-        spotChecks(installTarget);
+        unzip(distro, installTo, installed);
+    }
 
-        log("installation for " + version + " completed");
+    /**
+     * extract {@code zip} into {@code destination}, or only what changed since {@code installed} (if specified).
+     * The manifest of the resulting installation is saved along with it.
+     */
+    protected static InstallManifest unzip(File zip, File destination, InstallManifest installed) throws IOException {
+        ZipExtractor extractor = new ZipExtractor(zip, destination, unzipThreads);
+        InstallManifest manifest = extractor.extract(installed);
+        if (installed != null) {
+            log("updated " + extractor.getWritten() + " file(s), removed " + extractor.getDeleted() + " file(s); " +
+                extractor.getSkipped() + " file(s) unchanged");
+        }
+
+        manifest.save(destination);
+        return manifest;
     }
 
-    protected static void unzip(File zip, File destination) throws IOException {
-        try (ZipFile zipFile = new ZipFile(zip)) {
-            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
-            while (zipEntries.hasMoreElements()) {
-                ZipEntry zipEntry = zipEntries.nextElement();
-                File unzipTo = new File(destination, zipEntry.getName());
-                if (zipEntry.isDirectory()) {
-                    unzipTo.mkdirs();
-                } else {
-                    unzipTo.getParentFile().mkdirs();
-                    try (InputStream in = zipFile.getInputStream(zipEntry);
-                         FileOutputStream out = new FileOutputStream(unzipTo)) { IOUtils.copy(in, out); }
+    protected static InstallManifest unzip(InputStream in, File destination) throws IOException {
+        InstallManifest manifest = new InstallManifest();
+        MessageDigest digest = DistroCache.newSha256();
+        ZipInputStream zipIn = new ZipInputStream(in);
+        Path target = destination.toPath().toAbsolutePath().normalize();
+        ZipEntry zipEntry;
+        while ((zipEntry = zipIn.getNextEntry()) != null) {
+            File unzipTo = ZipExtractor.resolve(target, zipEntry).toFile();
+            if (zipEntry.isDirectory()) {
+                unzipTo.mkdirs();
+            } else {
+                unzipTo.getParentFile().mkdirs();
+                try (OutputStream out = new DigestOutputStream(new FileOutputStream(unzipTo), digest)) {
+                    IOUtils.copy(zipIn, out);
                 }
+                // no central directory in a stream, hence no mode bits
+                ZipPermissions.apply(unzipTo.toPath(), zipEntry.getName(), null);
+                // size and crc are known once the entry is read through
+                manifest.put(zipEntry.getName(),
+                             zipEntry.getSize(),
+                             zipEntry.getCrc(),
+                             DistroCache.toHex(digest.digest()),
+                             unzipTo.lastModified());
             }
         }
+
+        manifest.save(destination);
+        return manifest;
     }
 
     protected static void createFingerprint(String manifest, File destination) throws IOException {
-        FileUtils.writeStringToFile(new File(destination.getAbsolutePath() + separator + FINGERPRINT),
-                                    manifest, UTF8);
+        File fingerprint = new File(destination.getAbsolutePath() + separator + FINGERPRINT);
+        // hard-linked into a snapshot backup: replace rather than overwrite, or the backup would change along
+        if (SnapshotBackup.isShared(fingerprint.toPath())) { Files.deleteIfExists(fingerprint.toPath()); }
+        FileUtils.writeStringToFile(fingerprint, manifest, UTF8);
     }
 
-    protected static void spotChecks(File installTarget) {
+    protected static void spotChecks(File installTarget) throws IOException {
+        // one index for all checks, rather than one walk of installation directory per check
+        FileIndex index = FileIndex.of(installTarget);
         SPOT_CHECK_LIST.forEach(file -> {
-            String startsWith = installTarget.getAbsolutePath() + separator + file;
-            Collection<File> matches = FileUtils.listFiles(
-                installTarget,
-                new IOFileFilter() {
-                    @Override
-                    public boolean accept(File file) { return file.getAbsolutePath().startsWith(startsWith); }
-
-                    @Override
-                    public boolean accept(File dir, String name) { return true; }
-                },
-                new DirectoryFileFilter() {
-                    @Override
-                    public boolean accept(File file) { return true; }
-                });
-            if (matches.size() > 0) { log("verified: " + matches.iterator().next()); }
+            String match = index.find(file);
+            if (match != null) { log("verified: " + new File(installTarget, match)); }
         });
     }
 
@@ -965,8 +1650,10 @@ public class NexialInstaller {
         // return resolveLocation("", NEXIAL_LOCATION_HANDLER).getParent() + separator + ".nexial";
     }
 
-    private static void checkDuplicateProcess() {
+    /** true if this process may go ahead to check for, or upgrade to, a new version */
+    private static boolean checkDuplicateProcess() {
         final Path updateLock = Paths.get(NEXIAL_INSTALL_DIR + "update.lock");
+        if (processLock != null && processLock.isValid()) { return true; }
 
         final String processName = java.lang.management.ManagementFactory.getRuntimeMXBean().getName();
         final long processId = Long.parseLong(processName.split("@")[0]);
@@ -994,7 +1681,7 @@ public class NexialInstaller {
                         error("Unable to kill the zombie process. Aborting current process.");
                         exitCode = ERR_DUP_PROCESS;
                         exit(exitCode);
-                        return;
+                        return false;
                     }
 
                     /* Try to get lock on the lock file again. */
@@ -1009,17 +1696,36 @@ public class NexialInstaller {
                     error("Another nexial update checker is already running. Aborting current process.");
                     exitCode = ERR_DUP_PROCESS;
                     exit(exitCode);
+                    return false;
                 }
             } else {
                 lock.channel().write(ByteBuffer.wrap((processId + "").getBytes()));
                 file.deleteOnExit();
             }
+            processLock = lock;
+            return true;
         } catch (IOException e) {
             error("Could not get hold of the lock file. Aborting the run. Reason: " + e.getMessage());
             exitCode = ERR_UNKNOWN_EXCEPTION;
             exit(exitCode);
+            return false;
+        }
+    }
+
+    /** let other processes check for updates (or upgrade) while this one carries on */
+    private static void releaseProcessLock() {
+        if (processLock == null) { return; }
+        try {
+            processLock.channel().close();
+        } catch (IOException e) {
+            error("Unable to release lock file: " + e.getMessage());
         }
+        processLock = null;
     }
 
-    protected static void exit(int returnCode) { System.exit(returnCode); }
+    protected static void exit(int returnCode) {
+        // the daemon carries on with its next check
+        if (daemonMode) { return; }
+        System.exit(returnCode);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * runs the phases of a multi-step operation (such as an install) on a thread pool, each as soon as the phases it
+ * depends on are done, so that independent phases overlap. The first phase to fail stops the rest: phases not yet
+ * started are skipped, running ones are interrupted, and {@link #await(Phase)} reports that first failure once every
+ * phase has stopped, so that nothing is still running when the caller cleans up.
+ */
+final class PhaseGraph implements AutoCloseable {
+    private final String name;
+    private final ExecutorService executor;
+    private final List<Phase<?>> phases = new CopyOnWriteArrayList<>();
+    private volatile Throwable failure;
+
+    /** a unit of work of this graph */
+    final class Phase<T> {
+        private final String name;
+        private CompletableFuture<T> future;
+        private volatile Thread runningOn;
+
+        private Phase(String name) { this.name = name; }
+
+        public String getName() { return name;}
+
+        /** result of this phase; only for phases depending on it, since it's then known to be done */
+        public T get() { return future.join();}
+
+        private T run(Callable<T> task) {
+            // set before checking for failure, so that fail() either sees it or is seen here
+            runningOn = Thread.currentThread();
+            if (failure != null) {
+                runningOn = null;
+                throw new CancellationException(name + " skipped");
+            }
+
+            long startTime = System.currentTimeMillis();
+            try {
+                T result = task.call();
+                long elapsedTime = System.currentTimeMillis() - startTime;
+                log(PhaseGraph.this.name + ": " + name + " done in " + elapsedTime + " ms");
+                return result;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                runningOn = null;
+                // don't let a cancellation leak into the next phase to run on this thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    PhaseGraph(String name, int threads) {
+        this.name = name;
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * add {@code task} to run once all of {@code dependsOn} are done. These may also be phases of another graph, for
+     * work shared by several graphs; should such a phase fail, so does {@code task}
+     */
+    protected <T> Phase<T> add(String name, Callable<T> task, Phase<?>... dependsOn) {
+        Phase<T> phase = new Phase<>(name);
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) { dependencies[i] = dependsOn[i].future; }
+
+        phase.future = CompletableFuture.allOf(dependencies).thenApplyAsync(ignored -> phase.run(task), executor);
+        phase.future.whenComplete((result, e) -> { if (e != null) { fail(e); } });
+        phases.add(phase);
+        return phase;
+    }
+
+    /** result of {@code phase}; should any phase fail, its failure once all phases have stopped */
+    protected <T> T await(Phase<T> phase) throws IOException {
+        T result;
+        try {
+            result = phase.future.join();
+        } catch (CompletionException | CancellationException e) {
+            fail(e);
+            result = null;
+        }
+
+        if (failure == null) { return result; }
+
+        // let the others stop first
+        phases.forEach(PhaseGraph::awaitQuietly);
+        Throwable cause = unwrap(failure);
+        if (cause instanceof IOException) { throw (IOException) cause; }
+        if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+        if (cause instanceof Error) { throw (Error) cause; }
+        throw new IOException(cause);
+    }
+
+    /** stop all phases not yet done, and wait for them to stop */
+    protected void cancel() {
+        fail(new CancellationException(name + " cancelled"));
+        phases.forEach(PhaseGraph::awaitQuietly);
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure != null) { return; }
+        failure = e;
+        for (Phase<?> phase : phases) {
+            Thread thread = phase.runningOn;
+            if (thread != null) { thread.interrupt(); }
+        }
+    }
+
+    private static void awaitQuietly(Phase<?> phase) {
+        try {
+            phase.future.join();
+        } catch (CompletionException | CancellationException e) {
+            // reported by await()
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -17,11 +17,67 @@
 package org.nexial.installer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SaveFile {
     private File file;
     private long bytes;
     private long elapsedTime;
+    private long resumedBytes;
+    private List<Segment> segments = new ArrayList<>();
+
+    /** one byte range of a segmented download, fetched over its own connection */
+    public static class Segment {
+        private final int index;
+        private final long start;
+        private final long end;
+        // bytes written by a previous (interrupted) download
+        private final long resumedBytes;
+        // bytes written by the current download
+        private volatile long bytes;
+        private long elapsedTime;
+
+        public Segment(int index, long start, long end) { this(index, start, end, 0); }
+
+        public Segment(int index, long start, long end, long resumedBytes) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.resumedBytes = resumedBytes;
+        }
+
+        public int getIndex() { return index;}
+
+        public long getStart() { return start;}
+
+        public long getEnd() { return end;}
+
+        public long getResumedBytes() { return resumedBytes;}
+
+        public long getWritten() { return resumedBytes + bytes;}
+
+        /** next byte position to fetch */
+        public long getPosition() { return start + getWritten();}
+
+        public boolean isComplete() { return getPosition() > end;}
+
+        public long getBytes() { return bytes;}
+
+        public void setBytes(long bytes) { this.bytes = bytes;}
+
+        public long getElapsedTime() { return elapsedTime;}
+
+        public void setElapsedTime(long elapsedTime) { this.elapsedTime = elapsedTime;}
+
+        public String getThroughput() { return formatThroughput(bytes, elapsedTime); }
+
+        @Override
+        public String toString() {
+            return "segment #" + index + " [" + start + "-" + end + "]: " + bytes + " bytes in " + elapsedTime +
+                   " ms (" + getThroughput() + ")" + (resumedBytes > 0 ? ", resumed after " + resumedBytes : "");
+        }
+    }
 
     public File getFile() { return file;}
 
@@ -35,6 +91,27 @@ public class SaveFile {
 
     public void setElapsedTime(long elapsedTime) { this.elapsedTime = elapsedTime;}
 
+    public long getResumedBytes() { return resumedBytes;}
+
+    public void setResumedBytes(long resumedBytes) { this.resumedBytes = resumedBytes;}
+
+    public List<Segment> getSegments() { return segments;}
+
+    public void setSegments(List<Segment> segments) { this.segments = segments;}
+
+    public boolean isSegmented() { return segments != null && segments.size() > 1; }
+
+    /** aggregated throughput of the entire download, regardless of the number of segments used */
+    public String getThroughput() { return formatThroughput(bytes - resumedBytes, elapsedTime); }
+
+    protected static String formatThroughput(long bytes, long elapsedTime) {
+        if (elapsedTime < 1) { return "n/a"; }
+        return String.format("%.2f MB/s", (bytes / (1024d * 1024d)) / (elapsedTime / 1000d));
+    }
+
     @Override
-    public String toString() { return "file: " + file + ", bytes: " + bytes + ", elapsedTime: " + elapsedTime; }
+    public String toString() {
+        return "file: " + file + ", bytes: " + bytes + ", elapsedTime: " + elapsedTime + ", throughput: " +
+               getThroughput();
+    }
 }
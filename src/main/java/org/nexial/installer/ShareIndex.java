@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.nexial.installer.Const.*;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * index of the versions published on a network share ({@code updateFromDir} of {@code install.conf}). Each version is
+ * packed into one archive, {@code <version>.zip}, and listed in {@link Const#SHARE_INDEX} along with its build number,
+ * size and SHA-256. Clients read the index instead of listing the share, and copy one archive instead of a directory
+ * tree of many small files, which is slow over SMB or NFS.
+ * <p>
+ * Written by {@link #publish(Path)}; archives are never rewritten, and the index is swapped in whole, so that clients
+ * may read while a new version is published.
+ */
+final class ShareIndex {
+    private static final String HEADER = "# version\tbuild\tarchive\tsize\tlastModified\tsha256";
+    private static final String ARCHIVE_EXT = ".zip";
+    private static final String VERSION_REGEX = "nexial-core-v[0-9]+\\.[0-9]+_[0-9]+";
+
+    private final Path share;
+    // by version name
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    static final class Entry {
+        private final String version;
+        private final String archive;
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+
+        Entry(String version, String archive, long size, long lastModified, String sha256) {
+            this.version = version;
+            this.archive = archive;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+
+        public String getVersion() { return version;}
+
+        /** path of the archive, relative to the share */
+        public String getArchive() { return archive;}
+
+        public long getSize() { return size;}
+
+        public long getLastModified() { return lastModified;}
+
+        public String getSha256() { return sha256;}
+    }
+
+    private ShareIndex(Path share) { this.share = share; }
+
+    public Path getShare() { return share;}
+
+    /** index of {@code share}, or {@code null} if it has none */
+    protected static ShareIndex load(Path share) throws IOException {
+        Path file = share.resolve(SHARE_INDEX);
+        if (!Files.isRegularFile(file)) { return null; }
+
+        ShareIndex index = new ShareIndex(share);
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith("#")) { continue; }
+                String[] fields = StringUtils.split(line, "\t");
+                if (fields.length != 6) { throw new IOException("invalid line in " + file + ": " + line); }
+                index.entries.put(fields[0], new Entry(fields[0],
+                                                       fields[2],
+                                                       Long.parseLong(fields[3]),
+                                                       Long.parseLong(fields[4]),
+                                                       fields[5]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid " + file + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * pack every version (directory) on {@code share} that isn't packed yet, and (re)write the index of all packed
+     * versions. Archives already indexed are not hashed again unless their size or last modified time changed.
+     */
+    protected static ShareIndex publish(Path share) throws IOException {
+        if (!Files.isDirectory(share)) { throw new IOException(share + " is not a directory"); }
+
+        ShareIndex previous = load(share);
+        ShareIndex index = new ShareIndex(share);
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(share)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                if (name.matches(VERSION_REGEX) && Files.isDirectory(path) &&
+                    !Files.exists(share.resolve(name + ARCHIVE_EXT))) {
+                    pack(path, share.resolve(name + ARCHIVE_EXT));
+                }
+            }
+        }
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(share, "*" + ARCHIVE_EXT)) {
+            for (Path archive : paths) {
+                String name = archive.getFileName().toString();
+                String version = StringUtils.removeEnd(name, ARCHIVE_EXT);
+                if (!version.matches(VERSION_REGEX)) { continue; }
+
+                BasicFileAttributes attributes = Files.readAttributes(archive, BasicFileAttributes.class);
+                long size = attributes.size();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                Entry indexed = previous == null ? null : previous.get(version);
+                String sha256 = indexed != null && indexed.size == size && indexed.lastModified == lastModified ?
+                                indexed.sha256 : DistroCache.sha256(archive.toFile());
+                index.entries.put(version, new Entry(version, name, size, lastModified, sha256));
+            }
+        }
+
+        index.save();
+        return index;
+    }
+
+    protected Entry get(String version) { return version == null ? null : entries.get(version); }
+
+    protected int size() { return entries.size(); }
+
+    /** versions, each located at its archive */
+    protected VersionCatalog toCatalog() {
+        VersionCatalog catalog = new VersionCatalog();
+        entries.values().forEach(entry -> catalog.put(entry.version, share.resolve(entry.archive).toString()));
+        return catalog;
+    }
+
+    /**
+     * copy the archive of {@code version} to {@code saveTo} in one sequential read, checking its size and SHA-256
+     * along the way
+     */
+    protected File fetch(String version, File saveTo) throws IOException {
+        Entry entry = get(version);
+        if (entry == null) { throw new IOException(version + " is not published on " + share); }
+
+        MessageDigest digest = DistroCache.newSha256();
+        File archive = share.resolve(entry.archive).toFile();
+        try (InputStream in = new DigestInputStream(new FileInputStream(archive), digest);
+             OutputStream out = new FileOutputStream(saveTo)) {
+            byte[] buffer = new byte[SHARE_READ_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) { out.write(buffer, 0, read); }
+        }
+
+        String sha256 = DistroCache.toHex(digest.digest());
+        if (saveTo.length() != entry.size || !StringUtils.equals(sha256, entry.sha256)) {
+            FileUtils.deleteQuietly(saveTo);
+            throw new IOException(archive + " does not match " + SHARE_INDEX + " (size " + entry.size +
+                                  ", SHA-256 " + entry.sha256 + "); republish it");
+        }
+        return saveTo;
+    }
+
+    private void save() throws IOException {
+        Path file = share.resolve(SHARE_INDEX);
+        Path temp = file.resolveSibling(file.getFileName() + "." + System.nanoTime() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, UTF8)) {
+            writer.write(HEADER + "\n");
+            for (Entry entry : entries.values()) {
+                writer.write(entry.version + "\t" + Version.parse(entry.version).getBuild() + "\t" + entry.archive +
+                             "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.sha256 + "\n");
+            }
+        }
+        move(temp, file);
+    }
+
+    /** zip the files of {@code dir} (minus its install manifest) into {@code archive} */
+    private static void pack(Path dir, Path archive) throws IOException {
+        log("packing " + dir + " into " + archive + "...");
+        Path temp = archive.resolveSibling(archive.getFileName() + "." + System.nanoTime() + ".tmp");
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                                                                                SHARE_READ_SIZE))) {
+            for (File file : FileUtils.listFiles(dir.toFile(), null, true)) {
+                String name = dir.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+                if (INSTALL_MANIFEST.equals(name)) { continue; }
+
+                ZipEntry entry = new ZipEntry(name);
+                entry.setTime(file.lastModified());
+                out.putNextEntry(entry);
+                Files.copy(file.toPath(), out);
+                out.closeEntry();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        move(temp, archive);
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(from, to, REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static org.apache.commons.lang3.SystemUtils.IS_OS_LINUX;
+import static org.apache.commons.lang3.SystemUtils.IS_OS_MAC_OSX;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * backup of a Nexial installation that takes (almost) no time nor space: files are hard-linked into the backup rather
+ * than copied, since they are not changed until the next upgrade. Where hard links are not possible (backup on another
+ * file system, or not supported), the backup is a copy-on-write (reflink) copy where the OS offers one, else a full
+ * copy.
+ * <p>
+ * A hard-linked file is the same file in both trees, so it must never be modified in place: a file that
+ * {@link #isShared(Path)} is to be replaced (new file, or rename over it) instead.
+ */
+final class SnapshotBackup {
+    private static final long REFLINK_TIMEOUT_MINUTES = 10;
+
+    private String method = "hard links";
+    private int linked;
+
+    private SnapshotBackup() { }
+
+    /** snapshot {@code source} into {@code target}, which must not exist yet */
+    protected static SnapshotBackup snapshot(File source, File target) throws IOException {
+        SnapshotBackup snapshot = new SnapshotBackup();
+        if (snapshot.link(source.toPath(), target.toPath())) { return snapshot; }
+
+        FileUtils.deleteDirectory(target);
+        if (reflink(source, target)) {
+            snapshot.method = "copy-on-write copy, where supported";
+            return snapshot;
+        }
+
+        FileUtils.deleteDirectory(target);
+        return copy(source, target);
+    }
+
+    /** full copy of {@code source} into {@code target} */
+    protected static SnapshotBackup copy(File source, File target) throws IOException {
+        FileUtils.copyDirectory(source, target);
+        SnapshotBackup snapshot = new SnapshotBackup();
+        snapshot.method = "full copy";
+        return snapshot;
+    }
+
+    /** is {@code file} also linked from elsewhere (such as a snapshot)? Assume so when the file system can't tell */
+    protected static boolean isShared(Path file) {
+        try {
+            Object links = Files.getAttribute(file, "unix:nlink", NOFOLLOW_LINKS);
+            return !(links instanceof Number) || ((Number) links).intValue() > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return true;
+        }
+    }
+
+    public String getMethod() { return method; }
+
+    public int getLinked() { return linked; }
+
+    @Override
+    public String toString() { return linked > 0 ? method + " (" + linked + " files)" : method; }
+
+    /** hard-link every file of {@code source} into {@code target}; false if the file system won't */
+    private boolean link(Path source, Path target) throws IOException {
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path linkTo = target.resolve(source.relativize(file));
+                    if (attrs.isRegularFile()) {
+                        Files.createLink(linkTo, file);
+                        linked++;
+                    } else {
+                        Files.copy(file, linkTo, NOFOLLOW_LINKS, COPY_ATTRIBUTES);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // FileSystemException: such as cross-device link, or too many links
+            log("unable to hard-link files into backup (" + e.getMessage() + "); copying instead");
+            linked = 0;
+            return false;
+        }
+    }
+
+    /** copy-on-write copy via the OS' cp, where available (GNU cp on Linux, APFS clone on Mac) */
+    private static boolean reflink(File source, File target) {
+        List<String> command;
+        if (IS_OS_LINUX) {
+            // auto: falls back to a regular copy, still faster than copying through the JVM
+            command = Arrays.asList("cp", "-R", "--preserve=mode,timestamps", "--reflink=auto",
+                                    source.getAbsolutePath(), target.getAbsolutePath());
+        } else if (IS_OS_MAC_OSX) {
+            command = Arrays.asList("cp", "-R", "-p", "-c", source.getAbsolutePath(), target.getAbsolutePath());
+        } else {
+            return false;
+        }
+
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                                                         .redirectOutput(Redirect.appendTo(new File("/dev/null")))
+                                                         .start();
+            if (!process.waitFor(REFLINK_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0 && target.isDirectory();
+        } catch (IOException e) {
+            error("Unable to copy " + source + " via cp: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
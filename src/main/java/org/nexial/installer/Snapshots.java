@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.nexial.installer.Const.FINGERPRINT;
+import static org.nexial.installer.Const.UTF8;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * the last few installations replaced by an install or upgrade, kept read-only so that any of them can be put back
+ * with a rename rather than another download (see {@link #restore(String, File)}). Each is named after when it was
+ * kept and its version, e.g. {@code 20181025-143015-120.nexial-core-v1.9_0400}; beyond the number to retain, the
+ * oldest ones are discarded.
+ * <p>
+ * Installations are moved in by rename, so only those on the same file system are kept; the others are discarded as
+ * before.
+ */
+final class Snapshots {
+    private static final String UNKNOWN_VERSION = "unknown";
+
+    private final File dir;
+    private final int retain;
+    private final Trash trash;
+
+    /** {@code retain} less than 1 means no snapshots */
+    Snapshots(File dir, int retain, Trash trash) {
+        this.dir = dir.getAbsoluteFile();
+        this.retain = Math.max(retain, 0);
+        this.trash = trash;
+    }
+
+    public File getDir() { return dir;}
+
+    public int getRetain() { return retain;}
+
+    /**
+     * keep {@code installation} as the newest snapshot, or else discard it (snapshots disabled, installation on
+     * another file system, not a directory of its own such as a link to a version installed side by side, or not a
+     * complete installation)
+     */
+    protected void keep(Path installation) throws IOException {
+        if (!Files.exists(installation, NOFOLLOW_LINKS)) { return; }
+
+        boolean installed = Files.isRegularFile(installation.resolve(FINGERPRINT));
+        if (retain > 0 && installed && !Files.isSymbolicLink(installation)) {
+            Files.createDirectories(dir.toPath());
+            Path snapshot = dir.toPath().resolve(newName(installation.toFile()));
+            try {
+                Files.move(installation, snapshot, ATOMIC_MOVE);
+                setWritable(snapshot, false);
+                log("kept " + installation + " as snapshot " + snapshot.getFileName());
+                prune();
+                return;
+            } catch (IOException e) {
+                log("unable to keep " + installation + " as snapshot (" + e.getMessage() + "); discarding it instead");
+            }
+        }
+
+        trash.discard(installation);
+    }
+
+    /** snapshots, newest first */
+    protected List<String> list() {
+        String[] names = dir.list();
+        if (names == null) { return Collections.emptyList(); }
+
+        List<String> snapshots = new ArrayList<>(Arrays.asList(names));
+        snapshots.sort(Comparator.reverseOrder());
+        return snapshots;
+    }
+
+    /** newest snapshot of {@code version} (version or distro name), or the newest one if {@code version} is blank */
+    protected String find(String version) {
+        String wanted = StringUtils.removeEnd(StringUtils.trim(version), ".zip");
+        for (String snapshot : list()) {
+            if (StringUtils.isEmpty(wanted) || StringUtils.substringAfter(snapshot, ".").equals(wanted)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * put {@code snapshot} back as {@code target}; the installation it replaces is kept as a snapshot in turn, so that
+     * a rollback can be undone the same way
+     */
+    protected void restore(String snapshot, File target) throws IOException {
+        Path restoreFrom = dir.toPath().resolve(snapshot);
+        if (!Files.isDirectory(restoreFrom)) { throw new IOException("Snapshot " + snapshot + " not found in " + dir); }
+
+        Path current = target.getAbsoluteFile().toPath();
+        Path previous = current.resolveSibling(current.getFileName() + ".old");
+        trash.discard(previous);
+        boolean replaced = Files.exists(current, NOFOLLOW_LINKS);
+        if (replaced) { Files.move(current, previous, ATOMIC_MOVE); }
+
+        try {
+            Files.move(restoreFrom, current, ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (replaced) { Files.move(previous, current, ATOMIC_MOVE); }
+            throw e;
+        }
+
+        setWritable(current, true);
+        log("restored snapshot " + snapshot + " to " + target);
+        if (replaced) { keep(previous); }
+    }
+
+    /** discard the oldest snapshots, beyond the number to retain */
+    protected void prune() {
+        List<String> snapshots = list();
+        for (String snapshot : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+            Path discard = dir.toPath().resolve(snapshot);
+            try {
+                discard(discard);
+            } catch (IOException e) {
+                error("Unable to discard snapshot " + discard + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** discard {@code snapshot}, a directory of {@link #dir} */
+    protected void discard(Path snapshot) throws IOException {
+        setWritable(snapshot, true);
+        trash.discard(snapshot);
+    }
+
+    private static String newName(File installation) throws IOException {
+        File fingerprint = new File(installation, FINGERPRINT);
+        String version = fingerprint.isFile() ?
+                         StringUtils.trim(FileUtils.readFileToString(fingerprint, UTF8)) : UNKNOWN_VERSION;
+        String keptOn = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        return keptOn + "." + StringUtils.defaultIfBlank(StringUtils.removeEnd(version, ".zip"), UNKNOWN_VERSION);
+    }
+
+    /**
+     * make the files of {@code tree} read-only, or writable (by owner) again. Files hard-linked elsewhere (such as into
+     * nexial-core.BAK or the file store) are left alone, since the mode is shared with the other links
+     */
+    private static void setWritable(Path tree, boolean writable) throws IOException {
+        try (Stream<Path> files = Files.walk(tree)) {
+            files.filter(file -> Files.isRegularFile(file, NOFOLLOW_LINKS) && !SnapshotBackup.isShared(file))
+                 .forEach(file -> file.toFile().setWritable(writable));
+        }
+    }
+}
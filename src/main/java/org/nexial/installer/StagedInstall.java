@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.nexial.installer.Const.FINGERPRINT;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * a full installation of Nexial, staged next to the installation directory and swapped in by renames:
+ * <ol>
+ * <li>distro is extracted into {@code <target>.staging}, which is verified against its install manifest</li>
+ * <li>{@code <target>.staging} is renamed to {@code <target>.ready}: the new installation is complete</li>
+ * <li>current installation is renamed to the backup directory (or {@code <target>.old})</li>
+ * <li>{@code <target>.ready} is renamed to {@code <target>}</li>
+ * </ol>
+ * The installation directory is only missing between the last 2 renames. Should the installer die at any point,
+ * {@link #recover()} (as part of the next install) completes the swap if the new installation was ready, or else puts
+ * the current one back; either way leaving a consistent installation.
+ * <p>
+ * Given {@link Snapshots}, the installation replaced (and the backup replaced, if any) is kept as a snapshot rather
+ * than discarded.
+ */
+final class StagedInstall {
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final String READY_SUFFIX = ".ready";
+    private static final String PREVIOUS_SUFFIX = ".old";
+
+    private final File target;
+    private final File backup;
+    private final File staging;
+    private final File ready;
+    private final File previous;
+    private final TreeOps treeOps;
+    private final Trash trash;
+    private Snapshots snapshots;
+    // where current installation was moved to, during the swap
+    private File movedTo;
+    private boolean committed;
+    // previous backup is out of the way, or couldn't be (then no backup is made)
+    private boolean backupCleared;
+    private boolean backupFailed;
+    // current installation is already copied to backup; see prepareBackup()
+    private boolean backedUp;
+
+    StagedInstall(File target, File backup, TreeOps treeOps, Trash trash) {
+        this.target = target.getAbsoluteFile();
+        this.backup = backup == null ? null : backup.getAbsoluteFile();
+        this.staging = resolveSibling(this.target, STAGING_SUFFIX);
+        this.ready = resolveSibling(this.target, READY_SUFFIX);
+        this.previous = resolveSibling(this.target, PREVIOUS_SUFFIX);
+        this.treeOps = treeOps;
+        this.trash = trash;
+    }
+
+    /** keep replaced installations as snapshots */
+    protected void setSnapshots(Snapshots snapshots) { this.snapshots = snapshots; }
+
+    /** bring the installation directory back to a consistent state, should a previous install have been interrupted */
+    protected void recover() throws IOException {
+        // an empty installation directory is as good as none, such as one created for -target after the interruption
+        String[] installed = target.list();
+        boolean missing = !target.exists() || installed != null && installed.length == 0;
+        if (missing && (ready.isDirectory() || previous.isDirectory())) {
+            Files.deleteIfExists(target.toPath());
+            if (ready.isDirectory()) {
+                log("completing interrupted installation of " + target);
+                rename(ready, target);
+            } else {
+                log("restoring previous installation of " + target);
+                rename(previous, target);
+            }
+        }
+
+        // leftovers of an interrupted install
+        if (target.exists()) {
+            trash.discard(staging.toPath());
+            trash.discard(ready.toPath());
+            trash.discard(previous.toPath());
+        }
+    }
+
+    /** empty staging directory to extract distro into */
+    protected File prepare() throws IOException {
+        recover();
+        trash.discard(staging.toPath());
+        Files.createDirectories(staging.toPath());
+        log("staging Nexial installation in " + staging);
+        return staging;
+    }
+
+    /** everything listed in the install manifest of the staging directory must be there, in full */
+    protected void verify() throws IOException {
+        if (!new File(staging, FINGERPRINT).isFile()) {
+            throw new IOException("Staged installation is incomplete: " + FINGERPRINT + " not found");
+        }
+
+        InstallManifest manifest = InstallManifest.load(staging);
+        if (manifest == null || manifest.size() < 1) {
+            throw new IOException("Staged installation is incomplete: install manifest not found");
+        }
+
+        for (String path : manifest.getPaths()) {
+            File file = new File(staging, path);
+            if (!file.isFile() || file.length() != manifest.get(path).getSize()) {
+                throw new IOException("Staged installation is incomplete: " + path + " missing or truncated");
+            }
+        }
+    }
+
+    /**
+     * get backup ready ahead of {@link #commit()}, such as while the distro is being downloaded: previous backup is
+     * discarded, and if backup is on another file system (so that current installation can't be renamed there at
+     * commit), current installation is copied there now rather than after the swap
+     */
+    protected void prepareBackup() {
+        if (backup == null || !target.exists()) { return; }
+
+        log("resolved Nexial backup directory as " + backup);
+        if (!clearBackup()) { return; }
+
+        try {
+            Files.createDirectories(backup.getParentFile().toPath());
+            if (Files.getFileStore(target.toPath()).equals(Files.getFileStore(backup.getParentFile().toPath()))) {
+                return;
+            }
+        } catch (IOException e) {
+            // let commit() sort it out
+            return;
+        }
+
+        log("backup directory is on another file system; copying current installation there...");
+        TreeOps.Result copied = treeOps.copy(target.toPath(), backup.toPath());
+        log("backed up current Nexial installation: " + copied);
+        if (copied.isSuccessful()) {
+            backedUp = true;
+        } else {
+            error("Unable to back up current Nexial installation to " + backup);
+            treeOps.delete(backup.toPath());
+        }
+    }
+
+    /** verify the staged installation, then swap it in place of the current one (which goes to backup, if any) */
+    protected void commit() throws IOException {
+        verify();
+        log("verified staged Nexial installation");
+
+        // from here on, an interrupted install is completed by recover()
+        rename(staging, ready);
+
+        boolean backupByCopy = false;
+        if (target.exists()) {
+            if (backedUp) {
+                log("current Nexial installation already backed up to " + backup);
+            } else if (backup != null && !backupFailed) {
+                backupByCopy = !moveToBackup();
+            }
+
+            if (movedTo == null) {
+                try {
+                    rename(target, previous);
+                    movedTo = previous;
+                } catch (IOException e) {
+                    System.err.println("\n!!! ERROR !!!");
+                    System.err.println("UNABLE TO MOVE NEXIAL INSTALLATION DIRECTORY '" + target + "'");
+                    System.err.println("MAKE SURE THIS DIRECTORY IS NOT CURRENTLY OPEN " +
+                                       "(Explorer or CMD, for example),");
+                    System.err.println("AND NONE OF ITS FILES ARE OPENED BY OTHER PROGRAMS (Excel, for example).");
+                    throw e;
+                }
+            }
+        }
+
+        rename(ready, target);
+        committed = true;
+        log("Nexial installation directory swapped in place");
+
+        if (previous.exists()) {
+            if (backupByCopy) {
+                log("backing up previous Nexial installation to " + backup + "...");
+                try {
+                    TreeOps.Result moved = treeOps.move(previous.toPath(), backup.toPath());
+                    log("backed up previous Nexial installation: " + moved);
+                    moved.check("backing up " + previous);
+                    return;
+                } catch (IOException e) {
+                    error("Unable to back up previous Nexial installation: " + e.getMessage());
+                }
+            }
+
+            log("delete previous Nexial installation");
+            try {
+                retire(previous);
+            } catch (IOException e) {
+                error("Unable to delete previous Nexial installation: " + e.getMessage());
+            }
+        }
+    }
+
+    /** undo whatever is not committed yet: current installation is put back in place, staged files are removed */
+    protected void abort() {
+        if (committed) { return; }
+
+        if (movedTo != null && !target.exists()) {
+            try {
+                rename(movedTo, target);
+            } catch (IOException e) {
+                error("Unable to restore Nexial installation from " + movedTo + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        try {
+            trash.discard(staging.toPath());
+            trash.discard(ready.toPath());
+        } catch (IOException e) {
+            error("Unable to remove staged Nexial installation: " + e.getMessage());
+        }
+    }
+
+    /** rename current installation to backup; false if that's not possible, such as backup on another file system */
+    private boolean moveToBackup() {
+        if (!backupCleared && !clearBackup()) { return true; }
+
+        log("backing up current Nexial installation...");
+        try {
+            Files.createDirectories(backup.getParentFile().toPath());
+            rename(target, backup);
+            movedTo = backup;
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            log("backup directory is on another file system; current installation will be copied there instead");
+            return false;
+        } catch (IOException e) {
+            error("Unable to move current Nexial installation to " + backup + ": " + e.getMessage());
+            return true;
+        }
+    }
+
+    /** discard previous backup; false if that's not possible, in which case there will be no backup */
+    private boolean clearBackup() {
+        log("clean up previous backup directory (if exists)...");
+        try {
+            retire(backup);
+            backupCleared = true;
+            return true;
+        } catch (IOException e) {
+            backupFailed = true;
+            System.err.println("\n!!! ERROR !!!");
+            System.err.println("UNABLE TO DELETE BACKUP DIRECTORY '" + backup + "'");
+            System.err.println("EXISTING NEXIAL INSTALLATION DIRECTORY WILL NOT BE BACKED UP...\n");
+            return false;
+        }
+    }
+
+    /** installation no longer needed: kept as snapshot if possible, else discarded */
+    private void retire(File installation) throws IOException {
+        if (snapshots == null) {
+            trash.discard(installation.toPath());
+        } else {
+            snapshots.keep(installation.toPath());
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        Files.move(from.toPath(), to.toPath(), ATOMIC_MOVE);
+    }
+
+    private static File resolveSibling(File file, String suffix) {
+        return new File(file.getParentFile(), file.getName() + suffix);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * directory trees no longer needed (previous installation, old backup, stage directories) are renamed in here right
+ * away, so that the install doesn't wait on deleting them; they are deleted afterwards on a low-priority background
+ * thread. Whatever is left when the installer exits is deleted by the next invocation.
+ */
+final class Trash {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final File dir;
+    // for trees that can't be moved in here
+    private final TreeOps treeOps;
+    // deletes in the background, one file at a time
+    private final TreeOps backgroundOps = new TreeOps(1, null, Thread.MIN_PRIORITY);
+    private Thread emptying;
+
+    Trash(File dir, TreeOps treeOps) {
+        this.dir = dir.getAbsoluteFile();
+        this.treeOps = treeOps;
+    }
+
+    public File getDir() { return dir;}
+
+    /**
+     * move {@code tree} out of the way, to be deleted in the background. Deleted right away instead if it can't be
+     * renamed into trash, such as when it's on another file system
+     */
+    protected void discard(Path tree) throws IOException {
+        if (!Files.exists(tree)) { return; }
+
+        try {
+            Files.createDirectories(dir.toPath());
+            Path discarded = dir.toPath().resolve(tree.getFileName() + "." + System.currentTimeMillis() + "." +
+                                                  SEQUENCE.incrementAndGet());
+            Files.move(tree, discarded, ATOMIC_MOVE);
+            log("moved " + tree + " to trash");
+        } catch (IOException e) {
+            TreeOps.Result deleted = treeOps.delete(tree);
+            log("deleted " + tree + ": " + deleted);
+            deleted.check("removing " + tree);
+            return;
+        }
+
+        emptyInBackground();
+    }
+
+    /** delete everything in trash on a background thread, unless that's already under way */
+    protected synchronized void emptyInBackground() {
+        if (emptying != null && emptying.isAlive()) { return; }
+        if (isEmpty()) { return; }
+
+        emptying = new Thread(this::empty, "nexial-trash");
+        emptying.setDaemon(true);
+        emptying.setPriority(Thread.MIN_PRIORITY);
+        emptying.start();
+    }
+
+    /** delete everything in trash, including whatever is discarded in the meantime */
+    protected void empty() {
+        while (!isEmpty()) {
+            int failed = 0;
+            try (DirectoryStream<Path> discarded = Files.newDirectoryStream(dir.toPath())) {
+                for (Path tree : discarded) {
+                    if (!backgroundOps.delete(tree).isSuccessful()) { failed++; }
+                }
+            } catch (IOException e) {
+                return;
+            }
+
+            // leave the rest for next time
+            if (failed > 0) { return; }
+        }
+    }
+
+    /** wait for background deletion, up to {@code timeout} ms; true if trash is empty */
+    protected boolean await(long timeout) throws InterruptedException {
+        Thread thread;
+        synchronized (this) { thread = emptying; }
+        if (thread != null) { thread.join(timeout); }
+        return isEmpty();
+    }
+
+    protected boolean isEmpty() {
+        String[] discarded = dir.list();
+        return discarded == null || discarded.length == 0;
+    }
+}
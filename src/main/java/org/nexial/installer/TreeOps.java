@@ -0,0 +1,297 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.*;
+import static org.nexial.installer.Const.LINE_WIDTH;
+import static org.nexial.installer.Const.MAX_TREE_THREADS;
+import static org.nexial.installer.OutputUtils.error;
+
+/**
+ * copy, move and delete directory trees on a bounded work-stealing pool: each directory is a task, its files are
+ * split into small batches, and subdirectories are processed as they are found. This helps most where the latency of
+ * each file operation dominates, such as network-mounted home directories or Windows file systems.
+ * <p>
+ * A file that fails does not stop the rest; each failure is reported (and collected in {@link Result}) as it happens.
+ */
+final class TreeOps {
+    private static final int FILES_PER_TASK = 16;
+    private static final int SHOW_PROGRESS_PER_FILES = 100;
+
+    private final ForkJoinPool pool;
+    private final String progress;
+
+    /** result of one tree operation */
+    static final class Result {
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private long elapsedTime;
+        // moved by a single rename; no files were processed one by one
+        private boolean renamed;
+
+        public int getFiles() { return files.get();}
+
+        public long getBytes() { return bytes.get();}
+
+        public List<String> getErrors() { return new ArrayList<>(errors);}
+
+        public long getElapsedTime() { return elapsedTime;}
+
+        public boolean isSuccessful() { return errors.isEmpty();}
+
+        public boolean isRenamed() { return renamed;}
+
+        /** throw if any file failed */
+        public void check(String operation) throws IOException {
+            if (errors.isEmpty()) { return; }
+            throw new IOException(operation + " failed for " + errors.size() + " file(s), such as " + errors.peek());
+        }
+
+        @Override
+        public String toString() {
+            if (renamed) { return "renamed in " + elapsedTime + " ms"; }
+            return files + " file(s), " + bytes + " bytes in " + elapsedTime + " ms" +
+                   (errors.isEmpty() ? "" : "; " + errors.size() + " error(s)");
+        }
+    }
+
+    /** {@code threads} less than 1 means twice the available processors, up to {@link Const#MAX_TREE_THREADS} */
+    TreeOps(int threads, String progress) { this(threads, progress, Thread.NORM_PRIORITY); }
+
+    /** {@code priority} of the worker threads, such as {@link Thread#MIN_PRIORITY} for work in the background */
+    TreeOps(int threads, String progress, int priority) {
+        if (threads < 1) { threads = Math.min(Runtime.getRuntime().availableProcessors() * 2, MAX_TREE_THREADS); }
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setPriority(priority);
+            return thread;
+        }, null, false);
+        this.progress = progress;
+    }
+
+    /** copy {@code source} to {@code target}, merging into {@code target} if it already exists */
+    protected Result copy(Path source, Path target) {
+        return run(result -> new CopyTask(source, target, result));
+    }
+
+    /** delete {@code root} and everything underneath; nothing to do if it doesn't exist */
+    protected Result delete(Path root) {
+        return run(result -> new DeleteTask(root, result));
+    }
+
+    /**
+     * move {@code source} to {@code target}, which must not exist: a rename if possible, else a copy (then removal of
+     * {@code source} only if everything was copied)
+     */
+    protected Result move(Path source, Path target) throws IOException {
+        try {
+            long startTime = System.currentTimeMillis();
+            Files.move(source, target, ATOMIC_MOVE);
+            Result result = new Result();
+            result.renamed = true;
+            result.elapsedTime = System.currentTimeMillis() - startTime;
+            return result;
+        } catch (AtomicMoveNotSupportedException e) {
+            // another file system
+            Result result = copy(source, target);
+            if (result.isSuccessful()) {
+                Result deleted = delete(source);
+                result.errors.addAll(deleted.errors);
+                result.elapsedTime += deleted.elapsedTime;
+            }
+            return result;
+        }
+    }
+
+    private interface TaskFactory {
+        RecursiveAction newTask(Result result);
+    }
+
+    private Result run(TaskFactory factory) {
+        Result result = new Result();
+        long startTime = System.currentTimeMillis();
+        pool.invoke(factory.newTask(result));
+        result.elapsedTime = System.currentTimeMillis() - startTime;
+        if (showProgress() && result.getFiles() >= SHOW_PROGRESS_PER_FILES) { System.out.println(); }
+        return result;
+    }
+
+    private boolean showProgress() { return progress != null && progress.length() > 0; }
+
+    private void done(Result result, long bytes) {
+        result.bytes.addAndGet(bytes);
+        int files = result.files.incrementAndGet();
+        if (showProgress() && files % SHOW_PROGRESS_PER_FILES == 0) {
+            synchronized (this) {
+                System.out.print(progress);
+                if ((files / SHOW_PROGRESS_PER_FILES) % LINE_WIDTH == 0) { System.out.println(); }
+            }
+        }
+    }
+
+    private static void failed(Result result, Path path, Exception e) {
+        String message = path + ": " + e.getClass().getSimpleName() +
+                         (e.getMessage() == null ? "" : " (" + e.getMessage() + ")");
+        result.errors.add(message);
+        error("unable to process " + message);
+    }
+
+    /** add the {@code files} of a directory to {@code tasks} in batches of {@link #FILES_PER_TASK} */
+    private static <T> List<T> split(List<Path> files, List<T> tasks, BatchFactory<T> factory) {
+        for (int i = 0; i < files.size(); i += FILES_PER_TASK) {
+            tasks.add(factory.newBatch(files.subList(i, Math.min(i + FILES_PER_TASK, files.size()))));
+        }
+        return tasks;
+    }
+
+    private interface BatchFactory<T> {
+        T newBatch(List<Path> files);
+    }
+
+    /** list {@code dir} into its (real) subdirectories and everything else */
+    private static void list(Path dir, List<Path> dirs, List<Path> files) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
+                    dirs.add(child);
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+    }
+
+    private final class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path source;
+        private final Path target;
+        private final Result result;
+
+        private CopyTask(Path source, Path target, Result result) {
+            this.source = source;
+            this.target = target;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (!Files.isDirectory(source, NOFOLLOW_LINKS)) {
+                copyFile(source, target);
+                return;
+            }
+
+            List<Path> dirs = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try {
+                Files.createDirectories(target);
+                list(source, dirs, files);
+            } catch (IOException e) {
+                failed(result, source, e);
+                return;
+            }
+
+            List<RecursiveAction> tasks = new ArrayList<>();
+            dirs.forEach(dir -> tasks.add(new CopyTask(dir, target.resolve(dir.getFileName().toString()), result)));
+            invokeAll(split(files, tasks, batch -> new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    batch.forEach(file -> copyFile(file, target.resolve(file.getFileName().toString())));
+                }
+            }));
+        }
+
+        private void copyFile(Path file, Path copyTo) {
+            try {
+                Files.copy(file, copyTo, NOFOLLOW_LINKS, COPY_ATTRIBUTES, REPLACE_EXISTING);
+                done(result, Files.size(copyTo));
+            } catch (IOException e) {
+                failed(result, file, e);
+            }
+        }
+    }
+
+    private final class DeleteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Result result;
+
+        private DeleteTask(Path root, Result result) {
+            this.root = root;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (!Files.isDirectory(root, NOFOLLOW_LINKS)) {
+                deleteFile(root);
+                return;
+            }
+
+            List<Path> dirs = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try {
+                list(root, dirs, files);
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                failed(result, root, e);
+                return;
+            }
+
+            List<RecursiveAction> tasks = new ArrayList<>();
+            dirs.forEach(dir -> tasks.add(new DeleteTask(dir, result)));
+            invokeAll(split(files, tasks, batch -> new RecursiveAction() {
+                @Override
+                protected void compute() { batch.forEach(DeleteTask.this::deleteFile); }
+            }));
+
+            // children first
+            try {
+                Files.deleteIfExists(root);
+            } catch (IOException e) {
+                failed(result, root, e);
+            }
+        }
+
+        private void deleteFile(Path file) {
+            try {
+                long size = Files.isSymbolicLink(file) ? 0 : Files.size(file);
+                if (Files.deleteIfExists(file)) { done(result, size); }
+            } catch (NoSuchFileException e) {
+                // already gone
+            } catch (IOException e) {
+                failed(result, file, e);
+            }
+        }
+    }
+}
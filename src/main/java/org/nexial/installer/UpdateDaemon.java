@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static org.nexial.installer.Const.UTF8;
+import static org.nexial.installer.OutputUtils.error;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * runs the update check over and over in a resident JVM, instead of a new one per check. Each host checks at its own
+ * time within every interval, so that hosts started at the same minute don't all hit the release server together.
+ * A failed check is retried sooner, backing off exponentially (with jitter) up to the interval.
+ * <p>
+ * HTTP connections are kept alive between checks by the JDK, and the version list stays parsed in memory (see
+ * {@link CatalogCache}) for as long as it's not modified.
+ */
+final class UpdateDaemon {
+    private final Check check;
+    private final long interval;
+    private final long retry;
+    private final long offset;
+    private final Random random = new Random();
+    private int failures;
+
+    /** one update check; true if it succeeded */
+    interface Check {
+        boolean run() throws Exception;
+    }
+
+    /** check every {@code interval} ms at {@code host}'s time; failed check retried after {@code retry} ms or more */
+    UpdateDaemon(Check check, long interval, long retry, String host) {
+        this.check = check;
+        this.interval = Math.max(interval, 1);
+        this.retry = Math.max(retry, 1);
+        this.offset = offset(host, this.interval);
+    }
+
+    public int getFailures() { return failures;}
+
+    /** run the checks on a low-priority background thread, until it's interrupted */
+    protected Thread start() {
+        Thread thread = new Thread(this::run, "nexial-update-daemon");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    protected void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long delay = nextDelay(System.currentTimeMillis());
+            log("update daemon: next check in " + (delay / 1000) + " seconds");
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            boolean succeeded;
+            try {
+                succeeded = check.run();
+            } catch (Exception e) {
+                error("update check failed: " + e);
+                succeeded = false;
+            }
+            failures = succeeded ? 0 : failures + 1;
+        }
+    }
+
+    /**
+     * ms from {@code now} till next check: the next time of this host within the interval, or after a failed check,
+     * a random time between half and all of {@code retry * 2^(failures-1)} (but no more than the interval)
+     */
+    protected long nextDelay(long now) {
+        if (failures == 0) { return interval - Math.floorMod(now - offset, interval); }
+
+        long backoff = Math.min(retry << Math.min(failures - 1, 30), interval);
+        return backoff - (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    /** time of {@code host} within {@code interval}; hashed so that similar host names are far apart */
+    protected static long offset(String host, long interval) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(StringUtils.defaultString(host).getBytes(UTF8));
+            return Math.floorMod(ByteBuffer.wrap(hash).getLong(), interval);
+        } catch (NoSuchAlgorithmException e) {
+            return Math.floorMod(StringUtils.defaultString(host).hashCode(), interval);
+        }
+    }
+
+    protected static String resolveHost() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return StringUtils.defaultIfBlank(System.getenv("COMPUTERNAME"),
+                                              StringUtils.defaultIfBlank(System.getenv("HOSTNAME"),
+                                                                         System.getProperty("user.name")));
+        }
+    }
+}
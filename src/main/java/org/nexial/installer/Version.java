@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a Nexial version such as {@code nexial-core-v1.9_0400} (or {@code nexial-core-v1.9_0400.zip}), parsed once into
+ * major, minor and build number. Versions are ordered numerically; the full name breaks ties so that two distinct
+ * names never collapse into one. Names that don't follow the convention are kept (ordered before any parsed version)
+ * so that nothing published is hidden from the user.
+ */
+final class Version implements Comparable<Version> {
+    private static final Pattern VERSION_PATTERN = Pattern.compile("^(.*?)-?v(\\d+)\\.(\\d+)_(\\d+)(.*)$");
+    private static final Map<String, Version> PARSED = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int major;
+    private final int minor;
+    private final int build;
+
+    private Version(String name, int major, int minor, int build) {
+        this.name = name;
+        this.major = major;
+        this.minor = minor;
+        this.build = build;
+    }
+
+    /** parse {@code name} into a {@link Version}; each distinct name is only parsed once */
+    protected static Version parse(String name) {
+        if (name == null) { throw new IllegalArgumentException("version cannot be null"); }
+        return PARSED.computeIfAbsent(name, Version::newInstance);
+    }
+
+    private static Version newInstance(String name) {
+        Matcher matcher = VERSION_PATTERN.matcher(name);
+        if (!matcher.matches()) { return new Version(name, -1, -1, -1); }
+        return new Version(name,
+                           Integer.parseInt(matcher.group(2)),
+                           Integer.parseInt(matcher.group(3)),
+                           Integer.parseInt(matcher.group(4)));
+    }
+
+    /** highest possible version of the {@code major.minor} series; for range lookup */
+    protected static Version upperBound(int major, int minor) {
+        return new Version("\uffff", major, minor, Integer.MAX_VALUE);
+    }
+
+    public String getName() { return name; }
+
+    public int getMajor() { return major; }
+
+    public int getMinor() { return minor; }
+
+    public int getBuild() { return build; }
+
+    public boolean isParsed() { return build >= 0; }
+
+    public boolean isSameSeries(int major, int minor) { return this.major == major && this.minor == minor; }
+
+    /** numerically newer, regardless of naming */
+    public boolean isNewerThan(Version other) { return other == null || compareNumbers(other) > 0; }
+
+    @Override
+    public int compareTo(Version other) {
+        int compared = compareNumbers(other);
+        return compared != 0 ? compared : name.compareTo(other.name);
+    }
+
+    private int compareNumbers(Version other) {
+        if (major != other.major) { return Integer.compare(major, other.major); }
+        if (minor != other.minor) { return Integer.compare(minor, other.minor); }
+        return Integer.compare(build, other.build);
+    }
+
+    @Override
+    public boolean equals(Object o) { return this == o || o instanceof Version && name.equals(((Version) o).name); }
+
+    @Override
+    public int hashCode() { return name.hashCode(); }
+
+    @Override
+    public String toString() { return name; }
+}
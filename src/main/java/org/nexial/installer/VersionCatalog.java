@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static org.nexial.installer.Const.VER_LATEST;
+
+/**
+ * the available Nexial versions and where to get them (download URL, or directory for network install). Versions are
+ * indexed by name for exact lookup and kept in numeric order for "latest" (O(1)) and series lookup such as
+ * {@code latest 1.9.x} (O(log n)).
+ */
+final class VersionCatalog {
+    // e.g. 1.9.x, 1.9, latest 1.9.x
+    private static final Pattern SERIES_PATTERN =
+        Pattern.compile("^(?:" + VER_LATEST + "\\s+)?(\\d+)\\.(\\d+)(?:\\.x)?$");
+
+    private final Map<String, Version> byName = new HashMap<>();
+    private final TreeMap<Version, String> byVersion = new TreeMap<>();
+    private Version latest;
+
+    protected static VersionCatalog of(Map<String, String> versions) {
+        VersionCatalog catalog = new VersionCatalog();
+        if (versions != null) { versions.forEach(catalog::put); }
+        return catalog;
+    }
+
+    protected void put(String name, String location) {
+        Version version = Version.parse(name);
+        Version existing = byName.put(name, version);
+        byVersion.put(version, location);
+        if (existing == null && (latest == null || version.compareTo(latest) > 0)) { latest = version; }
+    }
+
+    protected boolean contains(String name) { return name != null && byName.containsKey(name); }
+
+    /** download URL (or location) of version {@code name}, or {@code null} if not available */
+    protected String getLocation(String name) {
+        Version version = name == null ? null : byName.get(name);
+        return version == null ? null : byVersion.get(version);
+    }
+
+    protected Version latest() { return latest; }
+
+    /** latest build of the {@code major.minor} series, or {@code null} if no such series */
+    protected Version latest(int major, int minor) {
+        Version version = byVersion.floorKey(Version.upperBound(major, minor));
+        return version != null && version.isSameSeries(major, minor) ? version : null;
+    }
+
+    /**
+     * resolve a version specification to a version in this catalog: {@code latest}, a series (e.g. {@code 1.9.x} or
+     * {@code latest 1.9.x}) or an exact version name. Returns {@code null} if nothing matches.
+     */
+    protected Version resolve(String spec) {
+        spec = StringUtils.trim(spec);
+        if (StringUtils.isEmpty(spec)) { return null; }
+        if (VER_LATEST.equals(spec)) { return latest; }
+
+        Matcher matcher = SERIES_PATTERN.matcher(spec);
+        if (matcher.matches()) {
+            return latest(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        }
+
+        return byName.get(spec);
+    }
+
+    /** is {@code spec} something other than an exact version name, i.e. to be resolved against a catalog? */
+    protected static boolean isVersionRange(String spec) {
+        spec = StringUtils.trim(spec);
+        return VER_LATEST.equals(spec) || spec != null && SERIES_PATTERN.matcher(spec).matches();
+    }
+
+    /** version names, newest first */
+    protected List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        byVersion.descendingKeySet().forEach(version -> names.add(version.getName()));
+        return names;
+    }
+
+    /** name to location, newest first */
+    protected Map<String, String> toMap() {
+        Map<String, String> versions = new LinkedHashMap<>();
+        byVersion.descendingMap().forEach((version, location) -> versions.put(version.getName(), location));
+        return versions;
+    }
+
+    protected int size() { return byName.size(); }
+
+    protected boolean isEmpty() { return byName.isEmpty(); }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.nexial.installer.Const.*;
+import static org.nexial.installer.OutputUtils.log;
+
+/**
+ * Nexial versions installed side by side, each in a directory of its own named after the version, with their files
+ * shared through a {@link FileStore}: disk usage grows with the content that differs between versions, not with the
+ * number of versions.
+ * <p>
+ * An installation directory (such as Nexial home) is pointed at one of these versions by {@link #use(String, File,
+ * File)}: it becomes a symbolic link to the version, switched over by a single rename. Where symbolic links can't be
+ * created (such as Windows without the privilege to), it gets a tree of hard links to the version instead, swapped in
+ * as a {@link StagedInstall}.
+ */
+final class VersionStore {
+    private static final String STAGING_SUFFIX = ".staging";
+    private static final String LINK_SUFFIX = ".link";
+
+    private final File dir;
+    private final FileStore files;
+    private final TreeOps treeOps;
+    private final Trash trash;
+    // files of the versions installed are known to the file store
+    private boolean learnt;
+
+    VersionStore(File dir, File storeDir, TreeOps treeOps, Trash trash) {
+        this.dir = dir.getAbsoluteFile();
+        this.files = new FileStore(storeDir.getAbsoluteFile());
+        this.treeOps = treeOps;
+        this.trash = trash;
+    }
+
+    public File getDir() { return dir;}
+
+    /** file store, aware of the files of all versions installed */
+    protected synchronized FileStore getFiles() {
+        if (!learnt) {
+            for (String version : list()) {
+                InstallManifest manifest = InstallManifest.load(getDir(version));
+                if (manifest != null) { files.learn(manifest); }
+            }
+            learnt = true;
+        }
+        return files;
+    }
+
+    /** versions installed, in order */
+    protected List<String> list() {
+        String[] names = dir.list();
+        if (names == null) { return Collections.emptyList(); }
+
+        List<String> versions = new ArrayList<>();
+        for (String name : names) {
+            if (!name.endsWith(STAGING_SUFFIX) && contains(name)) { versions.add(name); }
+        }
+        Collections.sort(versions);
+        return versions;
+    }
+
+    /** directory of {@code version}, as a version name or distro (zip) name */
+    protected File getDir(String version) { return new File(dir, StringUtils.removeEnd(version, ".zip")); }
+
+    /** is {@code version} installed, in full? */
+    protected boolean contains(String version) { return new File(getDir(version), INSTALL_MANIFEST).isFile(); }
+
+    /** empty directory to install {@code version} into, to be {@link #commit(String, File) committed} once complete */
+    protected File stage(String version) throws IOException {
+        File staging = new File(dir, getDir(version).getName() + STAGING_SUFFIX);
+        trash.discard(staging.toPath());
+        Files.createDirectories(staging.toPath());
+        log("staging Nexial " + version + " in " + staging);
+        return staging;
+    }
+
+    /** make {@code staged} the installation of {@code version}, replacing any previous one */
+    protected File commit(String version, File staged) throws IOException {
+        File versionDir = getDir(version);
+        trash.discard(versionDir.toPath());
+        Files.move(staged.toPath(), versionDir.toPath(), ATOMIC_MOVE);
+        return versionDir;
+    }
+
+    /**
+     * point {@code target} at {@code version}. An installation found in {@code target} that is not one of these
+     * versions is moved to {@code backup}, or discarded if {@code backup} is {@code null}
+     */
+    protected void use(String version, File target, File backup) throws IOException {
+        if (!contains(version)) { throw new IOException("Nexial " + version + " is not installed in " + dir); }
+
+        Path versionDir = getDir(version).toPath();
+        Path link = target.getAbsoluteFile().toPath();
+        // made next to target, then renamed over it
+        Path newLink = link.resolveSibling(link.getFileName() + LINK_SUFFIX);
+        Files.deleteIfExists(newLink);
+        try {
+            Files.createSymbolicLink(newLink, versionDir);
+        } catch (UnsupportedOperationException | IOException e) {
+            log("unable to link " + target + " to " + versionDir + " (" + e.getMessage() + "); " +
+                "using hard links instead");
+            useLinkedTree(versionDir.toFile(), target, backup);
+            return;
+        }
+
+        try {
+            if (Files.exists(link, NOFOLLOW_LINKS) && !Files.isSymbolicLink(link)) { moveAway(link, backup); }
+            Files.move(newLink, link, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(newLink);
+        }
+        log(target + " now points to " + versionDir);
+    }
+
+    /** version {@code target} is pointed at, or {@code null} if it's not one of these versions */
+    protected String current(File target) throws IOException {
+        Path link = target.getAbsoluteFile().toPath();
+        if (Files.isSymbolicLink(link)) {
+            Path linkedTo = Files.readSymbolicLink(link);
+            String version = linkedTo.getFileName().toString();
+            return getDir(version).toPath().equals(linkedTo) && contains(version) ? version : null;
+        }
+
+        // a tree of hard links; as good as its fingerprint
+        File fingerprint = new File(target, FINGERPRINT);
+        if (!fingerprint.isFile()) { return null; }
+        String version = getDir(StringUtils.trim(FileUtils.readFileToString(fingerprint, UTF8))).getName();
+        return contains(version) ? version : null;
+    }
+
+    /** remove {@code version}, along with the files no other version shares */
+    protected void remove(String version) throws IOException {
+        File versionDir = getDir(version);
+        if (!versionDir.isDirectory()) { throw new IOException("Nexial " + version + " is not installed in " + dir); }
+
+        trash.discard(versionDir.toPath());
+        log("removed Nexial " + version + " from " + dir);
+        gc();
+    }
+
+    /** remove the stored files that none of the versions installed use any more; returns the number of bytes freed */
+    protected long gc() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        for (String version : list()) {
+            InstallManifest manifest = InstallManifest.load(getDir(version));
+            // can't tell what it uses: keep everything
+            if (manifest == null) { return 0; }
+            for (String path : manifest.getPaths()) {
+                String sha256 = manifest.get(path).getSha256();
+                if (sha256 != null) { referenced.add(sha256); }
+            }
+        }
+        return getFiles().gc(referenced);
+    }
+
+    /** move an installation that is not one of these versions out of the way */
+    private void moveAway(Path installation, File backup) throws IOException {
+        String[] content = installation.toFile().list();
+        if (content != null && content.length == 0) {
+            Files.delete(installation);
+            return;
+        }
+
+        if (backup == null) {
+            trash.discard(installation);
+            return;
+        }
+
+        log("backing up current Nexial installation to " + backup + "...");
+        trash.discard(backup.toPath());
+        TreeOps.Result moved = treeOps.move(installation, backup.toPath());
+        log("backed up current Nexial installation: " + moved);
+        moved.check("backing up " + installation);
+    }
+
+    private void useLinkedTree(File versionDir, File target, File backup) throws IOException {
+        StagedInstall staged = new StagedInstall(target, backup, treeOps, trash);
+        staged.recover();
+        try {
+            File staging = staged.prepare();
+            // snapshot creates it
+            Files.delete(staging.toPath());
+            SnapshotBackup linked = SnapshotBackup.snapshot(versionDir, staging);
+            log("linked " + versionDir + " into " + target + ": " + linked);
+            staged.commit();
+        } finally {
+            staged.abort();
+        }
+    }
+}
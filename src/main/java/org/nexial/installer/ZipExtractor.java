@@ -0,0 +1,311 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.nexial.installer.Const.INSTALL_MANIFEST;
+import static org.nexial.installer.Const.MIN_PARALLEL_UNZIP_SIZE;
+
+/**
+ * extract a zip file with a bounded pool of workers. Since {@link ZipFile} allows random access, entries are split
+ * into one batch per worker (balanced by compressed size, largest first) and each worker extracts its batch through
+ * its own {@link ZipFile}; inflating and writing then proceed in parallel. All directories are created upfront, once
+ * each, before any file is written.
+ * <p>
+ * Given the {@link InstallManifest} of a previous installation, only the entries that differ from it (by CRC-32 and
+ * size, as recorded in the zip's central directory) are written, and files that are no longer in the zip are removed.
+ * A file is only trusted as unchanged if its size and last modified time on disk still match the manifest.
+ * <p>
+ * Permissions are applied as each file is written; see {@link ZipPermissions}.
+ * <p>
+ * Given a {@link FileStore}, entries whose content is stored already are hard-linked to it instead of extracted, and
+ * the files extracted are added to it.
+ */
+final class ZipExtractor {
+    private final File zip;
+    private final File destination;
+    private final int threads;
+    private Map<String, Integer> modes = Collections.emptyMap();
+    private FileStore store;
+    private int written;
+    private int linked;
+    private int skipped;
+    private int deleted;
+
+    /** {@code threads} less than 1 means one per available processor */
+    ZipExtractor(File zip, File destination, int threads) {
+        this.zip = zip;
+        this.destination = destination;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /** extract all entries to {@link #destination}; returns the manifest of the extracted files */
+    protected InstallManifest extract() throws IOException { return extract(null); }
+
+    /**
+     * extract to {@link #destination} the entries that differ from {@code previous}, and remove files that are in
+     * {@code previous} but not in the zip. {@code null} means a full extraction. Returns the manifest of all the files
+     * extracted now or previously.
+     */
+    protected InstallManifest extract(InstallManifest previous) throws IOException {
+        Path target = destination.toPath().toAbsolutePath().normalize();
+        InstallManifest manifest = new InstallManifest();
+
+        List<ZipEntry> files = new ArrayList<>();
+        Map<ZipEntry, Path> stored = new LinkedHashMap<>();
+        Set<Path> directories = new TreeSet<>();
+        Set<String> obsolete = previous == null ? new TreeSet<>() : new TreeSet<>(previous.getPaths());
+        long compressedSize = 0;
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                Path unzipTo = resolve(target, zipEntry);
+                if (zipEntry.isDirectory()) {
+                    directories.add(unzipTo);
+                    continue;
+                }
+
+                obsolete.remove(zipEntry.getName());
+                InstallManifest.Entry installed = previous == null ? null : previous.get(zipEntry.getName());
+                if (isUnchanged(zipEntry, installed, unzipTo)) {
+                    manifest.put(zipEntry.getName(),
+                                 installed.getSize(),
+                                 installed.getCrc(),
+                                 installed.getSha256(),
+                                 installed.getLastModified());
+                    skipped++;
+                    continue;
+                }
+
+                directories.add(unzipTo.getParent());
+                Path storedAs = store == null ? null : store.find(zipEntry.getCrc(), zipEntry.getSize());
+                if (storedAs != null) {
+                    stored.put(zipEntry, storedAs);
+                    continue;
+                }
+
+                files.add(zipEntry);
+                compressedSize += Math.max(zipEntry.getCompressedSize(), 0);
+            }
+        }
+
+        // parents sort before their children, so no directory is created (or checked) more than once
+        for (Path directory : directories) { Files.createDirectories(directory); }
+
+        boolean replace = previous != null;
+        for (Map.Entry<ZipEntry, Path> entry : stored.entrySet()) {
+            ZipEntry zipEntry = entry.getKey();
+            if (!link(target, zipEntry, entry.getValue(), manifest, replace)) {
+                files.add(zipEntry);
+                compressedSize += Math.max(zipEntry.getCompressedSize(), 0);
+            }
+        }
+
+        if (!files.isEmpty()) { modes = ZipPermissions.readModes(zip); }
+
+        int workers = compressedSize < MIN_PARALLEL_UNZIP_SIZE ? 1 : Math.min(threads, files.size());
+        if (workers <= 1) {
+            extractBatch(target, files, manifest, replace);
+        } else {
+            extractBatches(target, partition(files, workers), manifest, replace);
+        }
+        written = files.size();
+
+        for (String path : obsolete) { delete(target, path); }
+
+        return manifest;
+    }
+
+    /** share the files of {@code store}, and add to it the files extracted */
+    protected void setStore(FileStore store) { this.store = store; }
+
+    public int getWritten() { return written; }
+
+    public int getLinked() { return linked; }
+
+    public int getSkipped() { return skipped; }
+
+    public int getDeleted() { return deleted; }
+
+    /** split {@code entries} into {@code count} batches of about the same compressed size */
+    protected static List<List<ZipEntry>> partition(List<ZipEntry> entries, int count) {
+        List<ZipEntry> largestFirst = new ArrayList<>(entries);
+        largestFirst.sort(Comparator.comparingLong(ZipExtractor::weightOf).reversed());
+
+        List<List<ZipEntry>> batches = new ArrayList<>(count);
+        long[] weights = new long[count];
+        Comparator<Integer> byWeight = Comparator.comparingLong(batch -> weights[batch]);
+        PriorityQueue<Integer> lightest = new PriorityQueue<>(count, byWeight.thenComparing(batch -> batch));
+        for (int i = 0; i < count; i++) {
+            batches.add(new ArrayList<>());
+            lightest.add(i);
+        }
+
+        for (ZipEntry entry : largestFirst) {
+            int batch = lightest.poll();
+            batches.get(batch).add(entry);
+            weights[batch] += weightOf(entry);
+            lightest.add(batch);
+        }
+
+        return batches;
+    }
+
+    private void extractBatches(Path target, List<List<ZipEntry>> batches, InstallManifest manifest, boolean replace)
+        throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<ZipEntry> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    extractBatch(target, batch, manifest, replace);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) { future.get(); }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("extraction of " + zip + " interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+            if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void extractBatch(Path target, List<ZipEntry> batch, InstallManifest manifest, boolean replace)
+        throws IOException {
+        byte[] buffer = new byte[HttpUtils.getBufferSize()];
+        MessageDigest digest = DistroCache.newSha256();
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            for (ZipEntry zipEntry : batch) {
+                if (Thread.currentThread().isInterrupted()) { throw new IOException("extraction interrupted"); }
+                Path unzipTo = resolve(target, zipEntry);
+                // an existing file is replaced in one step, so that it is never seen half-written
+                Path writeTo = replace ? unzipTo.resolveSibling(unzipTo.getFileName() + ".nx~") : unzipTo;
+                try (InputStream in = zipFile.getInputStream(zipEntry);
+                     OutputStream out = Files.newOutputStream(writeTo)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                ZipPermissions.apply(writeTo, zipEntry.getName(), modes.get(zipEntry.getName()));
+
+                if (replace) { moveInPlace(writeTo, unzipTo); }
+                String sha256 = DistroCache.toHex(digest.digest());
+                // before reading last modified: the same content stored already replaces what was just written
+                if (store != null) { store.add(unzipTo, zipEntry.getCrc(), zipEntry.getSize(), sha256); }
+                manifest.put(zipEntry.getName(),
+                             zipEntry.getSize(),
+                             zipEntry.getCrc(),
+                             sha256,
+                             Files.getLastModifiedTime(unzipTo).toMillis());
+            }
+        }
+    }
+
+    /** hard-link {@code zipEntry} to {@code stored}, its content in {@link #store}; false if it can't be linked */
+    private boolean link(Path target, ZipEntry zipEntry, Path stored, InstallManifest manifest, boolean replace)
+        throws IOException {
+        Path unzipTo = resolve(target, zipEntry);
+        Path linkAs = replace ? unzipTo.resolveSibling(unzipTo.getFileName() + ".nx~") : unzipTo;
+        if (replace) { Files.deleteIfExists(linkAs); }
+        if (!store.link(stored, linkAs)) { return false; }
+
+        if (replace) { moveInPlace(linkAs, unzipTo); }
+        manifest.put(zipEntry.getName(),
+                     zipEntry.getSize(),
+                     zipEntry.getCrc(),
+                     stored.getFileName().toString(),
+                     Files.getLastModifiedTime(unzipTo).toMillis());
+        linked++;
+        return true;
+    }
+
+    private static void moveInPlace(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, REPLACE_EXISTING);
+        }
+    }
+
+    /** same CRC-32 and size as previously installed, and the installed file has not been touched since */
+    private static boolean isUnchanged(ZipEntry zipEntry, InstallManifest.Entry installed, Path file) {
+        if (installed == null || installed.getCrc() != zipEntry.getCrc() || installed.getSize() != zipEntry.getSize()) {
+            return false;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() &&
+                   attributes.size() == installed.getSize() &&
+                   attributes.lastModifiedTime().toMillis() == installed.getLastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** remove a previously installed file, along with the directories it leaves empty */
+    private void delete(Path target, String path) throws IOException {
+        Path file = target.resolve(path).normalize();
+        if (!file.startsWith(target) || path.equals(INSTALL_MANIFEST)) { return; }
+        if (Files.deleteIfExists(file)) { deleted++; }
+
+        for (Path dir = file.getParent(); dir != null && !dir.equals(target); dir = dir.getParent()) {
+            String[] children = dir.toFile().list();
+            if (children == null || children.length > 0) { break; }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /** resolve where {@code zipEntry} goes, refusing any entry that would land outside of {@code target} */
+    protected static Path resolve(Path target, ZipEntry zipEntry) throws IOException {
+        Path path = target.resolve(zipEntry.getName()).normalize();
+        if (!path.startsWith(target) || path.equals(target) && !zipEntry.isDirectory()) {
+            throw new IOException("Invalid zip entry " + zipEntry.getName() + ": outside of " + target);
+        }
+        return path;
+    }
+
+    // compressed size drives the cost of reading; unknown sizes count as 1 so that they are spread out too
+    private static long weightOf(ZipEntry entry) { return Math.max(entry.getCompressedSize(), 1); }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.nexial.installer.Const.EXECUTABLE_EXTENSIONS;
+import static org.nexial.installer.Const.UTF8;
+import static org.nexial.installer.OutputUtils.error;
+
+/**
+ * file permissions of extracted zip entries. Unix mode bits are taken from the external attributes of the zip's central
+ * directory (which {@link java.util.zip.ZipEntry} does not expose). Scripts, per {@link Const#EXECUTABLE_EXTENSIONS},
+ * are always made executable; for entries without mode bits (zip created on Windows, or read as a stream) that is all
+ * there is to it.
+ */
+final class ZipPermissions {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    // "version made by" host systems that store unix mode bits in the upper 16 bits of external attributes
+    private static final int HOST_UNIX = 3;
+    private static final int HOST_OSX = 19;
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private ZipPermissions() { }
+
+    /**
+     * unix mode (permission bits only) of the entries in {@code zip} that have one, by entry name. An unreadable
+     * central directory only means no mode bits: the extension rule applies to all entries then.
+     */
+    protected static Map<String, Integer> readModes(File zip) {
+        Map<String, Integer> modes = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(zip.toPath(), READ)) {
+            ByteBuffer centralDirectory = readCentralDirectory(channel);
+            while (centralDirectory.remaining() >= CENTRAL_HEADER_SIZE &&
+                   centralDirectory.getInt(centralDirectory.position()) == CENTRAL_HEADER_SIGNATURE) {
+                int header = centralDirectory.position();
+                int host = (centralDirectory.getShort(header + 4) >> 8) & 0xFF;
+                int nameLength = centralDirectory.getShort(header + 28) & 0xFFFF;
+                int extraLength = centralDirectory.getShort(header + 30) & 0xFFFF;
+                int commentLength = centralDirectory.getShort(header + 32) & 0xFFFF;
+                int mode = (centralDirectory.getInt(header + 38) >>> 16) & 0777;
+
+                byte[] name = new byte[nameLength];
+                centralDirectory.position(header + CENTRAL_HEADER_SIZE);
+                centralDirectory.get(name);
+                centralDirectory.position(centralDirectory.position() + extraLength + commentLength);
+
+                if ((host == HOST_UNIX || host == HOST_OSX) && mode != 0) { modes.put(new String(name, UTF8), mode); }
+            }
+        } catch (IOException | RuntimeException e) {
+            error("Unable to read file permissions from " + zip + ": " + e.getMessage());
+            modes.clear();
+        }
+
+        return modes;
+    }
+
+    /** apply {@code mode} (if any) to the {@code file} extracted from entry {@code name}, plus the extension rule */
+    protected static void apply(Path file, String name, Integer mode) throws IOException {
+        if (mode != null && POSIX) {
+            // scripts: executable by whoever can read them
+            if (isExecutable(name)) { mode |= (mode & 0444) >> 2; }
+            Files.setPosixFilePermissions(file, toPermissions(mode));
+        } else if (isExecutable(name)) {
+            file.toFile().setExecutable(true, false);
+        }
+    }
+
+    protected static boolean isExecutable(String name) {
+        return EXECUTABLE_EXTENSIONS.contains(StringUtils.lowerCase(StringUtils.substringAfterLast(name, ".")));
+    }
+
+    /** the installer must be able to update or remove what it has installed, so owner read/write is always kept */
+    protected static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.of(PosixFilePermission.OWNER_READ,
+                                                          PosixFilePermission.OWNER_WRITE);
+        // OWNER_READ (0400) through OTHERS_EXECUTE (0001), in that order
+        PosixFilePermission[] all = PosixFilePermission.values();
+        for (int i = 0; i < all.length; i++) {
+            if ((mode & (0400 >> i)) != 0) { permissions.add(all[i]); }
+        }
+        return permissions;
+    }
+
+    private static ByteBuffer readCentralDirectory(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) { throw new IOException("end of central directory not found"); }
+
+        long size = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long offset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            // zip64: real size and offset are in the zip64 end of central directory record
+            long locator = fileSize - tailSize + eocd - ZIP64_LOCATOR_SIZE;
+            ByteBuffer zip64Locator = read(channel, locator, ZIP64_LOCATOR_SIZE);
+            if (zip64Locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) { throw new IOException("zip64 locator not found"); }
+            ByteBuffer zip64Eocd = read(channel, zip64Locator.getLong(8), 56);
+            if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) { throw new IOException("zip64 record not found"); }
+            size = zip64Eocd.getLong(40);
+            offset = zip64Eocd.getLong(48);
+        }
+
+        if (offset + size > fileSize || size > Integer.MAX_VALUE) {
+            throw new IOException("invalid central directory");
+        }
+        return read(channel, offset, (int) size);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class CatalogCacheTest {
+    private static final String ETAG = "\"v1\"";
+    private static final String VERSIONS =
+        "{\"key\":\"nexial-core-v1.9_0400.zip\",\"url\":\"http://localhost/\"}\n" +
+        "{\"key\":\"nexial-core-v1.9_0410.zip\",\"url\":\"http://localhost/\"}\n";
+
+    private File tmpDir;
+    private HttpServer server;
+    private String versionUrl;
+    // response code of the version list; 200 is answered with 304 when ETag matches
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger fetched = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("CatalogCacheTest").toFile();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/versions.jsonl", exchange -> {
+            int code = status.get();
+            if (code == 200 && ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) { code = 304; }
+
+            byte[] body = code == 200 ? VERSIONS.getBytes(UTF8) : new byte[0];
+            if (code == 200) { fetched.incrementAndGet(); }
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.sendResponseHeaders(code, code == 304 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) { out.write(body); }
+        });
+        server.start();
+        versionUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/versions.jsonl";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        CatalogCache cache = new CatalogCache(tmpDir);
+        Assert.assertNull(cache.load(versionUrl));
+
+        cache.save(versionUrl, ETAG, null, Collections.singletonMap("nexial-core-v1.9_0400", "http://localhost/"));
+        CatalogCache.Entry entry = cache.load(versionUrl);
+        Assert.assertEquals(ETAG, entry.getEtag());
+        Assert.assertEquals("http://localhost/", entry.getVersions().get("nexial-core-v1.9_0400"));
+        // as read from another process
+        Assert.assertEquals(entry.getVersions(), new CatalogCache(tmpDir).load(versionUrl).getVersions());
+        Assert.assertNull(cache.load(versionUrl + "?other"));
+    }
+
+    @Test
+    public void fetchVersions() throws Exception {
+        CatalogCache cache = new CatalogCache(tmpDir);
+        Assert.assertEquals("nexial-core-v1.9_0410.zip",
+                            NexialInstaller.fetchVersions(versionUrl, cache).latest().getName());
+        Assert.assertEquals(ETAG, cache.load(versionUrl).getEtag());
+
+        // not modified: served from cache
+        Assert.assertEquals(2, NexialInstaller.fetchVersions(versionUrl, cache).size());
+        Assert.assertEquals(1, fetched.get());
+
+        // rate limited, or server error: cached version list still good
+        for (int code : new int[]{403, 500}) {
+            status.set(code);
+            Assert.assertEquals(2, NexialInstaller.fetchVersions(versionUrl, cache).size());
+        }
+
+        // but not without a cached one
+        try {
+            NexialInstaller.fetchVersions(versionUrl, new CatalogCache(new File(tmpDir, "empty")));
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("HTTP 500"));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class CommandLineOptionsTest {
+
+    @Test
+    public void repeatedTargets() {
+        CommandLineOptions options = CommandLineOptions.newInstance(new String[]{
+            "-install", "1.9.x", "-target", "/opt/nexial1", "-backup", "/opt/backup1", "-target", "/opt/nexial2"});
+
+        Assert.assertEquals("/opt/nexial1", options.getInstallTarget());
+        Assert.assertEquals("/opt/backup1", options.getBackupTarget());
+        Assert.assertEquals(Arrays.asList("/opt/nexial1", "/opt/nexial2"), options.getInstallTargets());
+        Assert.assertEquals(Arrays.asList("/opt/backup1"), options.getBackupTargets());
+    }
+
+    @Test
+    public void targetList() throws Exception {
+        File targetList = File.createTempFile("targets", ".txt");
+        try {
+            Files.write(targetList.toPath(),
+                        Arrays.asList("# build agents", "/opt/nexial1", "", "/opt/nexial2 ; /opt/backup2"),
+                        UTF8);
+
+            CommandLineOptions options = CommandLineOptions.newInstance(new String[]{
+                "-install", "1.9.x", "-target", "/opt/nexial0", "-target", "@" + targetList});
+
+            Assert.assertEquals("/opt/nexial0", options.getInstallTarget());
+            Assert.assertEquals(Arrays.asList("/opt/nexial0", "/opt/nexial1", "/opt/nexial2"),
+                                options.getInstallTargets());
+            // backups by position
+            Assert.assertEquals(Arrays.asList(null, null, "/opt/backup2"), options.getBackupTargets());
+        } finally {
+            Files.delete(targetList.toPath());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingTargetList() {
+        CommandLineOptions.newInstance(new String[]{"-install", "1.9.x", "-target", "@/no/such/targets.txt"});
+    }
+}
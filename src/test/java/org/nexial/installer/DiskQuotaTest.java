@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiskQuotaTest {
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private File tmpDir;
+    private final List<String> evicted = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("DiskQuotaTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void enforce() throws Exception {
+        long now = System.currentTimeMillis();
+        DiskQuota quota = new DiskQuota(2500, 10000);
+        quota.add(createTree("backup", 1000, now - 9 * DAY), 2, this::evict);
+        quota.add(createTree("snapshot-new", 1000, now - 2 * DAY), 1, this::evict);
+        quota.add(createTree("snapshot-old", 1000, now - 3 * DAY), 1, this::evict);
+        // too recent: may be in use
+        quota.add(createTree("download", 1000, now), 0, this::evict);
+
+        // 4000 bytes used: lowest priority, then oldest first
+        Assert.assertEquals(2000, quota.enforce());
+        Assert.assertEquals(2, evicted.size());
+        Assert.assertEquals("snapshot-old", evicted.get(0));
+        Assert.assertEquals("snapshot-new", evicted.get(1));
+    }
+
+    @Test
+    public void withinBudget() throws Exception {
+        DiskQuota quota = new DiskQuota(2500, 10000);
+        Path backup = createTree("backup", 1000, System.currentTimeMillis() - DAY);
+        quota.add(backup, 0, this::evict);
+
+        // linked from a snapshot: same space, counted once
+        Path snapshot = new File(tmpDir, "snapshot").toPath();
+        Files.createDirectories(snapshot);
+        Files.createLink(snapshot.resolve("0.jar"), backup.resolve("0.jar"));
+        quota.add(snapshot, 0, this::evict);
+
+        Assert.assertEquals(0, quota.enforce());
+        Assert.assertTrue(evicted.isEmpty());
+
+        // no budget
+        quota = new DiskQuota(0, 10000);
+        quota.add(backup, 0, this::evict);
+        Assert.assertEquals(0, quota.enforce());
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+    private void evict(Path path) throws IOException {
+        evicted.add(path.getFileName().toString());
+        FileUtils.deleteDirectory(path.toFile());
+    }
+
+    private Path createTree(String name, int size, long lastModified) throws Exception {
+        File dir = new File(tmpDir, name);
+        // 2 files, of half the size each
+        for (int i = 0; i < 2; i++) { FileUtils.writeByteArrayToFile(new File(dir, i + ".jar"), new byte[size / 2]); }
+        Assert.assertTrue(dir.setLastModified(lastModified));
+        return dir.toPath();
+    }
+}
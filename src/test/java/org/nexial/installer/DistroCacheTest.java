@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistroCacheTest {
+    private File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("DistroCacheTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tmpDir);
+    }
+
+    @Test
+    public void storeAndLookup() throws Exception {
+        DistroCache cache = new DistroCache(new File(tmpDir, "cache"), 1024 * 1024);
+        Assert.assertNull(cache.lookup("nexial-core-v1.9_0400"));
+
+        File cached = cache.store("nexial-core-v1.9_0400", newDistro("distro1.zip", 1000, 'a'));
+        Assert.assertTrue(cache.contains(cached));
+        Assert.assertFalse(new File(tmpDir, "distro1.zip").exists());
+        Assert.assertEquals(cached, cache.lookup("nexial-core-v1.9_0400"));
+        Assert.assertEquals(DistroCache.sha256(cached) + ".zip", cached.getName());
+
+        // same content under another version shares the same blob
+        File cached2 = cache.store("nexial-core-v1.9_0401", newDistro("distro2.zip", 1000, 'a'));
+        Assert.assertEquals(cached, cached2);
+        Assert.assertEquals(cached, cache.lookup("nexial-core-v1.9_0401"));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        DistroCache cache = new DistroCache(new File(tmpDir, "cache"), 2500);
+
+        File cached1 = cache.store("v1", newDistro("distro1.zip", 1000, 'a'));
+        File cached2 = cache.store("v2", newDistro("distro2.zip", 1000, 'b'));
+        cached1.setLastModified(System.currentTimeMillis() - 60000);
+        cached2.setLastModified(System.currentTimeMillis() - 30000);
+
+        // v1 is now most recently used
+        Assert.assertNotNull(cache.lookup("v1"));
+
+        cache.store("v3", newDistro("distro3.zip", 1000, 'c'));
+        Assert.assertNotNull(cache.lookup("v1"));
+        Assert.assertNull(cache.lookup("v2"));
+        Assert.assertNotNull(cache.lookup("v3"));
+    }
+
+    @Test
+    public void corruptedBlob() throws Exception {
+        DistroCache cache = new DistroCache(new File(tmpDir, "cache"), 1024 * 1024);
+        File cached = cache.store("v1", newDistro("distro1.zip", 1000, 'a'));
+        FileUtils.writeStringToFile(cached, "not the same anymore", Const.UTF8);
+
+        Assert.assertNull(cache.lookup("v1"));
+        Assert.assertFalse(cached.exists());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        DistroCache cache = new DistroCache(new File(tmpDir, "cache"), 0);
+        File distro = newDistro("distro1.zip", 1000, 'a');
+        Assert.assertEquals(distro, cache.store("v1", distro));
+        Assert.assertTrue(distro.exists());
+        Assert.assertNull(cache.lookup("v1"));
+    }
+
+    private File newDistro(String name, int size, char content) throws IOException {
+        File distro = new File(tmpDir, name);
+        FileUtils.writeStringToFile(distro, StringUtils.repeat(content, size), Const.UTF8);
+        return distro;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class DownloadStateTest {
+    private static final String URL = "http://localhost/nexial-core-v1.9_0400.zip";
+
+    private File tmpDir;
+    private File target;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("DownloadStateTest").toFile();
+        target = new File(tmpDir, "nexial-core-v1.9_0400.zip");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void segments() {
+        DownloadState state = DownloadState.newInstance(target, URL, "\"v1\"", null, 10, 3);
+        List<SaveFile.Segment> segments = state.getSegments();
+        Assert.assertEquals(3, segments.size());
+
+        // contiguous, covering every byte; last segment takes the remainder
+        long next = 0;
+        for (SaveFile.Segment segment : segments) {
+            Assert.assertEquals(next, segment.getStart());
+            next = segment.getEnd() + 1;
+        }
+        Assert.assertEquals(10, next);
+        Assert.assertEquals(6, segments.get(2).getStart());
+        Assert.assertFalse(state.isComplete());
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        FileUtils.writeByteArrayToFile(target, new byte[1000]);
+        String lastModified = "Mon, 01 Jan 2018 00:00:00 GMT";
+        DownloadState state = DownloadState.newInstance(target, URL, "\"v1\"", lastModified, 1000, 2);
+        state.getSegments().get(0).setBytes(500);
+        state.getSegments().get(1).setBytes(20);
+        state.save();
+
+        DownloadState loaded = DownloadState.load(target);
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(URL, loaded.getUrl());
+        Assert.assertEquals(1000, loaded.getContentLength());
+        Assert.assertEquals(520, loaded.getWritten());
+        Assert.assertTrue(loaded.getSegments().get(0).isComplete());
+        Assert.assertEquals(520, loaded.getSegments().get(1).getPosition());
+
+        Assert.assertTrue(loaded.isResumable(URL, "\"v1\"", null, 1000));
+        // changed, or a different download altogether
+        Assert.assertFalse(loaded.isResumable(URL, "\"v2\"", null, 1000));
+        Assert.assertFalse(loaded.isResumable(URL, "\"v1\"", null, 1001));
+        Assert.assertFalse(loaded.isResumable(URL + "?x", "\"v1\"", null, 1000));
+        // no validator to compare
+        Assert.assertFalse(loaded.isResumable(URL, null, null, 1000));
+
+        // partial file gone
+        FileUtils.writeByteArrayToFile(target, new byte[10]);
+        Assert.assertFalse(loaded.isResumable(URL, "\"v1\"", null, 1000));
+
+        loaded.invalidate();
+        Assert.assertNull(DownloadState.load(target));
+        loaded.save();
+        Assert.assertFalse(DownloadState.resolveStateFile(target).exists());
+    }
+
+    @Test
+    public void ifRange() {
+        Assert.assertEquals("\"v1\"", DownloadState.newInstance(target, URL, "\"v1\"", "lm", 10, 1).getIfRange());
+        // weak ETag not allowed
+        Assert.assertEquals("lm", DownloadState.newInstance(target, URL, "W/\"v1\"", "lm", 10, 1).getIfRange());
+        Assert.assertNull(DownloadState.newInstance(target, URL, null, null, 10, 1).getIfRange());
+    }
+
+    @Test
+    public void loadCorrupted() throws Exception {
+        Assert.assertNull(DownloadState.load(target));
+
+        FileUtils.writeStringToFile(DownloadState.resolveStateFile(target),
+                                    "url=" + URL + "\ncontentLength=1000\nsegments=2\nsegment.1=0-499:500\n",
+                                    UTF8);
+        Assert.assertNull(DownloadState.load(target));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.io.File.separator;
+import static org.nexial.installer.Const.UTF8;
+
+public class FileIndexTest {
+    private File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("FileIndexTest").toFile();
+        FileUtils.writeStringToFile(new File(tmpDir, "bin/nexial.sh"), "#!/bin/bash", UTF8);
+        FileUtils.writeStringToFile(new File(tmpDir, "lib/nexial-core-1.9.jar"), "core", UTF8);
+        FileUtils.writeStringToFile(new File(tmpDir, "lib/nexial-seeknow-1.0.jar"), "seeknow", UTF8);
+        FileUtils.writeStringToFile(new File(tmpDir, "template/nexial-data.xlsx"), "data", UTF8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void find() {
+        FileIndex index = FileIndex.of(Arrays.asList("lib/nexial-core-1.9.jar", "lib/nexial-seeknow-1.0.jar",
+                                                     "lib\\setup.jar", "bin/nexial.sh"));
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals("lib/nexial-core-1.9.jar", index.find("lib" + separator + "nexial-core"));
+        Assert.assertEquals("lib/nexial-core-1.9.jar", index.find("lib/nexial-core"));
+        Assert.assertEquals("lib/setup.jar", index.find("lib/setup"));
+        Assert.assertEquals("bin/nexial.sh", index.find("bin/nexial.sh"));
+        Assert.assertNull(index.find("bin/nexial.cmd"));
+        Assert.assertNull(index.find("lib/nexial-zzz"));
+        Assert.assertEquals(3, index.findAll("lib/").size());
+        Assert.assertEquals(0, index.findAll("template/").size());
+        Assert.assertTrue(index.contains("lib/setup.jar"));
+    }
+
+    @Test
+    public void ofDirectory() throws Exception {
+        // no install manifest: found by walking
+        FileIndex index = FileIndex.of(tmpDir);
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals("lib/nexial-seeknow-1.0.jar", index.find("lib/nexial-seeknow"));
+        Assert.assertEquals("template/nexial-data.xlsx", index.find("template/nexial-data.xlsx"));
+
+        // with install manifest: what it lists, without walking
+        InstallManifest manifest = new InstallManifest();
+        manifest.put("bin/nexial.cmd", 5, 1, null, 1);
+        manifest.save(tmpDir);
+        index = FileIndex.of(tmpDir);
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals("bin/nexial.cmd", index.find("bin/nexial"));
+    }
+}
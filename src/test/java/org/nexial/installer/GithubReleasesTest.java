@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class GithubReleasesTest {
+
+    @Test
+    public void read() throws Exception {
+        String json = "[\n" +
+                      "  {\"url\": \"https://api.github.com/repos/nexiality/nexial-core/releases/1\",\n" +
+                      "   \"tag_name\": \"nexial-core-v1.9_0410\",\n" +
+                      "   \"author\": {\"login\": \"nexiality\", \"id\": 1},\n" +
+                      "   \"assets\": [{\"name\": \"nexial-core-v1.9_0410.zip\",\n" +
+                      "                \"uploader\": {\"login\": \"nexiality\"},\n" +
+                      "                \"browser_download_url\": \"https://github.com/dl/1.zip\"},\n" +
+                      "               {\"browser_download_url\": \"https://github.com/dl/other.zip\"}],\n" +
+                      "   \"body\": \"" + StringUtils.repeat("release notes\\n", 10000) + "\"},\n" +
+                      "  {\"assets\": [{\"browser_download_url\": \"https://github.com/dl/0.zip\"}],\n" +
+                      "   \"tag_name\": \"nexial-core-v1.9_0400\"},\n" +
+                      "  {\"tag_name\": \"no-assets\", \"assets\": []},\n" +
+                      "  {\"tag_name\": \"no-url\", \"assets\": [{\"name\": \"x\"}, " +
+                      "{\"browser_download_url\": \"https://github.com/dl/x.zip\"}]},\n" +
+                      "  {\"tag_name\": null, \"assets\": [{\"browser_download_url\": \"https://github.com/dl/y.zip\"}]}\n" +
+                      "]";
+
+        Map<String, String> versions = new LinkedHashMap<>();
+        Assert.assertEquals(5, GithubReleases.read(new ByteArrayInputStream(json.getBytes(UTF8)), versions));
+        Assert.assertEquals(2, versions.size());
+        Assert.assertEquals("https://github.com/dl/1.zip", versions.get("nexial-core-v1.9_0410"));
+        Assert.assertEquals("https://github.com/dl/0.zip", versions.get("nexial-core-v1.9_0400"));
+    }
+
+    @Test
+    public void readEmpty() throws Exception {
+        Map<String, String> versions = new LinkedHashMap<>();
+        Assert.assertEquals(0, GithubReleases.read(new ByteArrayInputStream(" [ ] ".getBytes(UTF8)), versions));
+        Assert.assertTrue(versions.isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void readNotArray() throws Exception {
+        String json = "{\"message\": \"API rate limit exceeded\"}";
+        GithubReleases.read(new ByteArrayInputStream(json.getBytes(UTF8)), new LinkedHashMap<>());
+    }
+
+    @Test
+    public void parseLinks() {
+        String link = "<https://api.github.com/repositories/1/releases?prerelease=true&per_page=100&page=2>; " +
+                      "rel=\"next\", " +
+                      "<https://api.github.com/repositories/1/releases?prerelease=true&per_page=100&page=7>; " +
+                      "rel=\"last\"";
+        Map<String, String> links = GithubReleases.parseLinks(link);
+        Assert.assertEquals(2, links.size());
+        Assert.assertEquals(2, GithubReleases.parsePage(links.get("next")));
+        Assert.assertEquals(7, GithubReleases.parsePage(links.get("last")));
+        Assert.assertEquals("https://api.github.com/repositories/1/releases?prerelease=true&per_page=100&page=5",
+                            GithubReleases.withPage(links.get("next"), 5));
+
+        Assert.assertTrue(GithubReleases.parseLinks(null).isEmpty());
+        Assert.assertEquals(-1, GithubReleases.parsePage("https://api.github.com/releases?per_page=100"));
+    }
+
+    @Test
+    public void withPageSize() {
+        Assert.assertEquals("https://api.github.com/releases?prerelease=true&per_page=100",
+                            GithubReleases.withPageSize("https://api.github.com/releases?prerelease=true"));
+        Assert.assertEquals("https://api.github.com/releases?per_page=100",
+                            GithubReleases.withPageSize("https://api.github.com/releases"));
+        Assert.assertEquals("https://api.github.com/releases?per_page=10",
+                            GithubReleases.withPageSize("https://api.github.com/releases?per_page=10"));
+    }
+}
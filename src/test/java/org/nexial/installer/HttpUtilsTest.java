@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.BUFFER_SIZE;
+import static org.nexial.installer.Const.MIN_SEGMENT_SIZE;
+import static org.nexial.installer.Const.UTF8;
+
+public class HttpUtilsTest {
+    private static final long DISTRO_SIZE = 32 * 1024 * 1024;
+
+    private File tmpDir;
+    private RangeServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("HttpUtilsTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) { server.stop(); }
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void readText() throws Exception {
+        String text = "[{\"tag_name\":\"nexial-core-v1.9_0400\",\"body\":\"d\u00e9j\u00e0 vu \u2013 \u2603\"}]";
+        byte[] bytes = text.getBytes(UTF8);
+
+        Assert.assertEquals(text, HttpUtils.readText(new ByteArrayInputStream(bytes), bytes.length));
+        // no (or wrong) size hint: buffer must grow as needed
+        Assert.assertEquals(text, HttpUtils.readText(new ByteArrayInputStream(bytes), -1));
+        Assert.assertEquals(text, HttpUtils.readText(new ByteArrayInputStream(bytes), 3));
+        Assert.assertEquals("", HttpUtils.readText(new ByteArrayInputStream(new byte[0]), 0));
+    }
+
+    @Test
+    public void save() throws Exception {
+        File saveTo = new File(tmpDir, "distro.zip");
+        SaveFile saveFile = HttpUtils.save(new ZeroInputStream(DISTRO_SIZE), saveTo, null);
+        Assert.assertEquals(DISTRO_SIZE, saveFile.getBytes());
+        Assert.assertEquals(DISTRO_SIZE, saveTo.length());
+    }
+
+    /** compare heap allocation of the channel-based save against the original per-read {@code byte[]} copy loop */
+    @Test
+    public void saveAllocation() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        File saveTo = new File(tmpDir, "distro.zip");
+
+        // warm up both paths first
+        legacySave(new ZeroInputStream(DISTRO_SIZE), saveTo);
+        HttpUtils.save(new ZeroInputStream(DISTRO_SIZE), saveTo, null);
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        legacySave(new ZeroInputStream(DISTRO_SIZE), saveTo);
+        long legacyAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadMXBean.getThreadAllocatedBytes(threadId);
+        HttpUtils.save(new ZeroInputStream(DISTRO_SIZE), saveTo, null);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        // at least 10 times less
+        Assert.assertTrue("allocated " + allocated + " bytes (channel) vs " + legacyAllocated + " bytes (legacy)",
+                          allocated * 10 < legacyAllocated);
+    }
+
+    @Test
+    public void saveToSegmented() throws Exception {
+        server = new RangeServer(3 * MIN_SEGMENT_SIZE + 100);
+        File saveTo = new File(tmpDir, "distro.zip");
+
+        // no more segments than MIN_SEGMENT_SIZE allows
+        SaveFile saveFile = HttpUtils.saveTo(server.url, saveTo, null, 8);
+        Assert.assertEquals(3, saveFile.getSegments().size());
+        Assert.assertEquals(3, server.ranges.size());
+        Assert.assertEquals(server.content.length, saveFile.getBytes());
+        Assert.assertArrayEquals(server.content, FileUtils.readFileToByteArray(saveTo));
+        Assert.assertFalse(DownloadState.resolveStateFile(saveTo).exists());
+    }
+
+    @Test
+    public void saveToResumed() throws Exception {
+        server = new RangeServer(2 * MIN_SEGMENT_SIZE);
+        File saveTo = new File(tmpDir, "distro.zip");
+
+        // interrupted: first segment done, second one 1000 bytes in
+        DownloadState state = DownloadState.newInstance(saveTo, server.url, server.etag, null,
+                                                        server.content.length, 2);
+        List<SaveFile.Segment> segments = state.getSegments();
+        segments.get(0).setBytes(MIN_SEGMENT_SIZE);
+        segments.get(1).setBytes(1000);
+        byte[] partial = new byte[server.content.length];
+        System.arraycopy(server.content, 0, partial, 0, MIN_SEGMENT_SIZE + 1000);
+        FileUtils.writeByteArrayToFile(saveTo, partial);
+        state.save();
+
+        SaveFile saveFile = HttpUtils.saveTo(server.url, saveTo, null, 2);
+        Assert.assertEquals(MIN_SEGMENT_SIZE + 1000, saveFile.getResumedBytes());
+        Assert.assertEquals("bytes=" + (MIN_SEGMENT_SIZE + 1000) + "-" + (server.content.length - 1) +
+                            " If-Range=" + server.etag,
+                            String.join(",", server.ranges));
+        Assert.assertArrayEquals(server.content, FileUtils.readFileToByteArray(saveTo));
+        Assert.assertFalse(DownloadState.resolveStateFile(saveTo).exists());
+    }
+
+    @Test
+    public void saveToChangedWhileDownloading() throws Exception {
+        server = new RangeServer(2 * MIN_SEGMENT_SIZE);
+        // file replaced after HEAD: If-Range no longer matches, so the whole file is sent instead of the range
+        server.changed = true;
+        File saveTo = new File(tmpDir, "distro.zip");
+
+        // partial content is discarded; downloaded again as a whole
+        SaveFile saveFile = HttpUtils.saveTo(server.url, saveTo, null, 2);
+        Assert.assertTrue(saveFile.getSegments().isEmpty());
+        Assert.assertEquals("null", server.ranges.get(server.ranges.size() - 1));
+        Assert.assertTrue(server.ranges.get(0).endsWith(" If-Range=" + server.etag));
+        Assert.assertArrayEquals(server.content, FileUtils.readFileToByteArray(saveTo));
+        Assert.assertFalse(DownloadState.resolveStateFile(saveTo).exists());
+    }
+
+    /** the copy loop as it was, allocating a new buffer after every read */
+    private static void legacySave(InputStream in, File saveTo) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(saveTo)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+                buffer = new byte[BUFFER_SIZE];
+            }
+        }
+    }
+
+    /** serves {@code content} with ETag, HEAD and byte ranges (honoring If-Range) like a release server would */
+    private static class RangeServer {
+        private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+        private final HttpServer httpServer;
+        private final byte[] content;
+        private final String url;
+        private final String etag = "\"v1\"";
+        // Range (and If-Range) of every GET received
+        private final List<String> ranges = new CopyOnWriteArrayList<>();
+        private volatile boolean changed;
+
+        private RangeServer(int size) throws IOException {
+            content = new byte[size];
+            new Random(size).nextBytes(content);
+            httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            httpServer.createContext("/distro.zip", this::handle);
+            httpServer.start();
+            url = "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/distro.zip";
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", etag);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", content.length + "");
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            ranges.add(range + (ifRange == null ? "" : " If-Range=" + ifRange));
+
+            Matcher matcher = range == null || changed ? null : RANGE.matcher(range);
+            int start = 0;
+            int end = content.length - 1;
+            if (matcher != null && matcher.matches()) {
+                start = Integer.parseInt(matcher.group(1));
+                end = Integer.parseInt(matcher.group(2));
+                exchange.getResponseHeaders()
+                        .set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) { out.write(content, start, end - start + 1); }
+        }
+
+        private void stop() { httpServer.stop(0); }
+    }
+
+    /** allocation-free stand-in for a network stream */
+    private static class ZeroInputStream extends InputStream {
+        private long remaining;
+
+        private ZeroInputStream(long size) { remaining = size; }
+
+        @Override
+        public int read() { return remaining-- > 0 ? 0 : -1; }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) { return -1; }
+            int read = (int) Math.min(len, remaining);
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class InstallVerifierTest {
+    private File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("InstallVerifierTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void verify() throws Exception {
+        install(true, "bin/nexial.sh", "lib/nexial-core.jar", "lib/setup.jar", "template/nexial-data.xlsx");
+
+        InstallVerifier verifier = new InstallVerifier(tmpDir, 2);
+        Assert.assertTrue(verifier.verify());
+        Assert.assertEquals(4, verifier.getVerified());
+        Assert.assertEquals(0, verifier.getRehashed());
+
+        // touched, but same content
+        File touched = new File(tmpDir, "lib/setup.jar");
+        Assert.assertTrue(touched.setLastModified(touched.lastModified() + 5000));
+        verifier = new InstallVerifier(tmpDir, 2);
+        Assert.assertTrue(verifier.verify());
+        Assert.assertEquals(1, verifier.getRehashed());
+
+        // ... and recorded as such
+        verifier = new InstallVerifier(tmpDir, 2);
+        Assert.assertTrue(verifier.verify());
+        Assert.assertEquals(0, verifier.getRehashed());
+
+        // same size, different content
+        File modified = new File(tmpDir, "lib/nexial-core.jar");
+        FileUtils.writeStringToFile(modified, "LIB/NEXIAL-CORE.JAR", UTF8);
+        Assert.assertTrue(modified.setLastModified(modified.lastModified() + 5000));
+        Assert.assertTrue(new File(tmpDir, "bin/nexial.sh").delete());
+        FileUtils.writeStringToFile(new File(tmpDir, "template/nexial-data.xlsx"), "truncated", UTF8);
+
+        verifier = new InstallVerifier(tmpDir, 2);
+        Assert.assertFalse(verifier.verify());
+        Assert.assertEquals(1, verifier.getVerified());
+        Assert.assertEquals(Collections.singletonList("bin/nexial.sh"), verifier.getMissing());
+        Assert.assertEquals(2, verifier.getModified().size());
+        Assert.assertTrue(verifier.getModified().contains("lib/nexial-core.jar"));
+        Assert.assertTrue(verifier.getModified().contains("template/nexial-data.xlsx"));
+    }
+
+    @Test
+    public void verifyWithoutSha256() throws Exception {
+        // manifest of an older installer: CRC-32 only
+        install(false, "lib/nexial-core.jar", "lib/setup.jar");
+        File touched = new File(tmpDir, "lib/setup.jar");
+        Assert.assertTrue(touched.setLastModified(touched.lastModified() + 5000));
+        File modified = new File(tmpDir, "lib/nexial-core.jar");
+        FileUtils.writeStringToFile(modified, "LIB/NEXIAL-CORE.JAR", UTF8);
+        Assert.assertTrue(modified.setLastModified(modified.lastModified() + 5000));
+
+        InstallVerifier verifier = new InstallVerifier(tmpDir, 2);
+        Assert.assertFalse(verifier.verify());
+        Assert.assertEquals(1, verifier.getRehashed());
+        Assert.assertEquals(Collections.singletonList("lib/nexial-core.jar"), verifier.getModified());
+    }
+
+    @Test(expected = IOException.class)
+    public void verifyWithoutManifest() throws Exception {
+        new InstallVerifier(tmpDir, 2).verify();
+    }
+
+    private void install(boolean withSha256, String... paths) throws Exception {
+        InstallManifest manifest = new InstallManifest();
+        for (String path : paths) {
+            File file = new File(tmpDir, path);
+            FileUtils.writeStringToFile(file, path, UTF8);
+            CRC32 crc = new CRC32();
+            crc.update(path.getBytes(UTF8));
+            manifest.put(path,
+                         file.length(),
+                         crc.getValue(),
+                         withSha256 ? DistroCache.sha256(file) : null,
+                         file.lastModified());
+        }
+        manifest.save(tmpDir);
+    }
+}
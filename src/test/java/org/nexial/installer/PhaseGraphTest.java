@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PhaseGraphTest {
+
+    @Test
+    public void dependencies() throws Exception {
+        List<String> done = new CopyOnWriteArrayList<>();
+        // both independent phases must be running at the same time to get past the latch
+        CountDownLatch overlap = new CountDownLatch(2);
+
+        try (PhaseGraph phases = new PhaseGraph("test", 3)) {
+            PhaseGraph.Phase<String> download = phases.add("download", () -> {
+                overlap.countDown();
+                Assert.assertTrue(overlap.await(5, TimeUnit.SECONDS));
+                done.add("download");
+                return "distro.zip";
+            });
+            PhaseGraph.Phase<String> prepare = phases.add("prepare", () -> {
+                overlap.countDown();
+                Assert.assertTrue(overlap.await(5, TimeUnit.SECONDS));
+                done.add("prepare");
+                return "staging";
+            });
+            PhaseGraph.Phase<String> extract = phases.add("extract", () -> {
+                done.add("extract");
+                return download.get() + " > " + prepare.get();
+            }, download, prepare);
+
+            Assert.assertEquals("distro.zip > staging", phases.await(extract));
+            Assert.assertEquals(3, done.size());
+            Assert.assertEquals("extract", done.get(2));
+        }
+    }
+
+    @Test
+    public void failure() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean skipped = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(1);
+
+        try (PhaseGraph phases = new PhaseGraph("test", 3)) {
+            PhaseGraph.Phase<Void> backup = phases.add("backup", () -> {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                return null;
+            });
+            PhaseGraph.Phase<Void> download = phases.add("download", () -> {
+                started.await();
+                throw new IOException("unable to download");
+            });
+            PhaseGraph.Phase<Void> extract = phases.add("extract", () -> {
+                skipped.set(false);
+                return null;
+            }, download);
+
+            try {
+                phases.await(extract);
+                Assert.fail("expected IOException");
+            } catch (IOException e) {
+                // first failure, not that of the phases depending on it
+                Assert.assertEquals("unable to download", e.getMessage());
+            }
+
+            // running phases are stopped before await() returns
+            Assert.assertTrue(interrupted.get());
+            Assert.assertTrue(skipped.get());
+
+            try {
+                phases.await(backup);
+                Assert.fail("expected IOException");
+            } catch (IOException e) {
+                Assert.assertEquals("unable to download", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void sharedPhases() throws Exception {
+        try (PhaseGraph shared = new PhaseGraph("shared", 1);
+             PhaseGraph target1 = new PhaseGraph("target1", 1);
+             PhaseGraph target2 = new PhaseGraph("target2", 1)) {
+            PhaseGraph.Phase<String> download = shared.add("download", () -> "distro.zip");
+            PhaseGraph.Phase<String> broken = shared.add("broken", () -> { throw new IOException("unable to resolve"); });
+
+            PhaseGraph.Phase<String> extract = target1.add("extract", () -> download.get() + " > target1", download);
+            Assert.assertEquals("distro.zip > target1", target1.await(extract));
+
+            // failure of a shared phase fails the phases depending on it, not the graph it belongs to
+            PhaseGraph.Phase<String> failed = target2.add("extract", () -> download.get() + " > target2", broken);
+            try {
+                target2.await(failed);
+                Assert.fail("expected IOException");
+            } catch (IOException e) {
+                Assert.assertEquals("unable to resolve", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.*;
+
+public class ShareIndexTest {
+    private File tmpDir;
+    private Path share;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("ShareIndexTest").toFile();
+        share = new File(tmpDir, "share").toPath();
+        createVersion("nexial-core-v1.9_0400");
+        createVersion("nexial-core-v1.9_0410");
+        // not a version
+        FileUtils.writeStringToFile(share.resolve("readme.txt").toFile(), "hello", UTF8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void publishAndFetch() throws Exception {
+        Assert.assertNull(ShareIndex.load(share));
+
+        ShareIndex published = ShareIndex.publish(share);
+        Assert.assertEquals(2, published.size());
+        File archive = share.resolve("nexial-core-v1.9_0410.zip").toFile();
+        Assert.assertTrue(archive.isFile());
+        try (ZipFile zip = new ZipFile(archive)) {
+            Assert.assertNotNull(zip.getEntry("lib/nexial-core.jar"));
+            Assert.assertNotNull(zip.getEntry(FINGERPRINT));
+            Assert.assertNull(zip.getEntry(INSTALL_MANIFEST));
+        }
+
+        ShareIndex index = ShareIndex.load(share);
+        Assert.assertNotNull(index);
+        VersionCatalog catalog = index.toCatalog();
+        Assert.assertEquals("nexial-core-v1.9_0410", catalog.latest().getName());
+        Assert.assertEquals(archive.toString(), catalog.getLocation("nexial-core-v1.9_0410"));
+        Assert.assertEquals(DistroCache.sha256(archive), index.get("nexial-core-v1.9_0410").getSha256());
+
+        File fetched = index.fetch("nexial-core-v1.9_0410", new File(tmpDir, "fetched.zip"));
+        Assert.assertTrue(FileUtils.contentEquals(archive, fetched));
+
+        // published again: nothing to pack or hash
+        long lastModified = archive.lastModified();
+        Assert.assertEquals(2, ShareIndex.publish(share).size());
+        Assert.assertEquals(lastModified, archive.lastModified());
+    }
+
+    @Test
+    public void fetchTampered() throws Exception {
+        ShareIndex index = ShareIndex.publish(share);
+        FileUtils.writeStringToFile(share.resolve("nexial-core-v1.9_0400.zip").toFile(), "oops", UTF8, true);
+
+        File fetched = new File(tmpDir, "fetched.zip");
+        try {
+            index.fetch("nexial-core-v1.9_0400", fetched);
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            Assert.assertFalse(fetched.exists());
+        }
+
+        try {
+            index.fetch("nexial-core-v1.9_0999", fetched);
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            // not published
+        }
+    }
+
+    private void createVersion(String version) throws IOException {
+        File dir = share.resolve(version).toFile();
+        FileUtils.writeStringToFile(new File(dir, FINGERPRINT), version, UTF8);
+        FileUtils.writeStringToFile(new File(dir, "lib/nexial-core.jar"), version + " jar", UTF8);
+        FileUtils.writeStringToFile(new File(dir, "bin/nexial.sh"), "#!/bin/bash", UTF8);
+        FileUtils.writeStringToFile(new File(dir, INSTALL_MANIFEST), "# manifest", UTF8);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.FINGERPRINT;
+import static org.nexial.installer.Const.UTF8;
+
+public class SnapshotBackupTest {
+    private File tmpDir;
+    private File home;
+    private File backup;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("SnapshotBackupTest").toFile();
+        home = new File(tmpDir, "nexial-core");
+        backup = new File(tmpDir, "nexial-core.BAK");
+        FileUtils.writeStringToFile(new File(home, FINGERPRINT), "nexial-core-v1.9_0400", UTF8);
+        FileUtils.writeStringToFile(new File(home, "bin/nexial.sh"), "echo nexial", UTF8);
+        FileUtils.writeStringToFile(new File(home, "lib/nexial-core.jar"), "nexial-core", UTF8);
+        Assert.assertTrue(new File(home, "template/empty").mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void snapshot() throws Exception {
+        Assume.assumeTrue(Files.getFileStore(tmpDir.toPath()).supportsFileAttributeView("unix"));
+
+        SnapshotBackup snapshot = SnapshotBackup.snapshot(home, backup);
+        Assert.assertEquals("hard links", snapshot.getMethod());
+        Assert.assertEquals(3, snapshot.getLinked());
+        Assert.assertTrue(new File(backup, "template/empty").isDirectory());
+        Assert.assertEquals("echo nexial", FileUtils.readFileToString(new File(backup, "bin/nexial.sh"), UTF8));
+        Assert.assertTrue(SnapshotBackup.isShared(new File(home, "lib/nexial-core.jar").toPath()));
+        Assert.assertTrue(SnapshotBackup.isShared(new File(backup, "lib/nexial-core.jar").toPath()));
+
+        // new fingerprint must not show up in backup
+        NexialInstaller.createFingerprint("nexial-core-v1.9_0410", home);
+        Assert.assertEquals("nexial-core-v1.9_0410", FileUtils.readFileToString(new File(home, FINGERPRINT), UTF8));
+        Assert.assertEquals("nexial-core-v1.9_0400", FileUtils.readFileToString(new File(backup, FINGERPRINT), UTF8));
+        Assert.assertFalse(SnapshotBackup.isShared(new File(home, FINGERPRINT).toPath()));
+    }
+
+    @Test
+    public void copy() throws Exception {
+        Assume.assumeTrue(Files.getFileStore(tmpDir.toPath()).supportsFileAttributeView("unix"));
+
+        SnapshotBackup snapshot = SnapshotBackup.copy(home, backup);
+        Assert.assertEquals("full copy", snapshot.getMethod());
+        Assert.assertEquals("nexial-core", FileUtils.readFileToString(new File(backup, "lib/nexial-core.jar"), UTF8));
+        Assert.assertFalse(SnapshotBackup.isShared(new File(home, "lib/nexial-core.jar").toPath()));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.FINGERPRINT;
+import static org.nexial.installer.Const.UTF8;
+
+public class SnapshotsTest {
+    private File tmpDir;
+    private Trash trash;
+    private Snapshots snapshots;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("SnapshotsTest").toFile();
+        trash = new Trash(new File(tmpDir, "trash"), new TreeOps(2, null));
+        snapshots = new Snapshots(new File(tmpDir, "snapshots"), 2, trash);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        trash.await(5000);
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void keepAndRestore() throws Exception {
+        File target = new File(tmpDir, "nexial-core");
+        for (String version : new String[]{"nexial-core-v1.9_0400.zip", "nexial-core-v1.9_0410", "v1.9_0420"}) {
+            snapshots.keep(install(target, version).toPath());
+            Assert.assertFalse(target.exists());
+            // snapshots named by time, at ms resolution
+            Thread.sleep(5);
+        }
+
+        // oldest one is gone
+        Assert.assertEquals(2, snapshots.list().size());
+        Assert.assertNull(snapshots.find("nexial-core-v1.9_0400"));
+        String latest = snapshots.find(null);
+        Assert.assertTrue(latest.endsWith(".v1.9_0420"));
+        String previous = snapshots.find("nexial-core-v1.9_0410.zip");
+        Assert.assertNotNull(previous);
+        File kept = new File(snapshots.getDir(), previous + "/lib/nexial-core.jar");
+        if (!SnapshotBackup.isShared(kept.toPath())) { Assert.assertFalse(isWritable(kept)); }
+
+        // current installation is kept in its place
+        install(target, "v1.9_0430");
+        snapshots.restore(previous, target);
+        Assert.assertEquals("nexial-core-v1.9_0410",
+                            FileUtils.readFileToString(new File(target, "lib/nexial-core.jar"), UTF8));
+        Assert.assertTrue(isWritable(new File(target, "lib/nexial-core.jar")));
+        Assert.assertFalse(new File(tmpDir, "nexial-core.old").exists());
+        Assert.assertEquals(2, snapshots.list().size());
+        Assert.assertTrue(snapshots.list().get(0).endsWith(".v1.9_0430"));
+        Assert.assertEquals(latest, snapshots.list().get(1));
+    }
+
+    @Test
+    public void keepLinked() throws Exception {
+        File target = install(new File(tmpDir, "nexial-core"), "v1.9_0400");
+        File backup = new File(tmpDir, "nexial-core.BAK");
+        SnapshotBackup.snapshot(target, backup);
+
+        snapshots.keep(target.toPath());
+        Assert.assertEquals(1, snapshots.list().size());
+
+        // the backup shares its files with the snapshot; still writable, and deletable
+        File linked = new File(backup, "lib/nexial-core.jar");
+        Assert.assertTrue(isWritable(linked));
+        Files.delete(linked.toPath());
+        FileUtils.deleteDirectory(backup);
+        Assert.assertFalse(backup.exists());
+    }
+
+    @Test
+    public void keepNothing() throws Exception {
+        // not an installation
+        File target = new File(tmpDir, "nexial-core");
+        Assert.assertTrue(target.mkdirs());
+        snapshots.keep(target.toPath());
+        Assert.assertFalse(target.exists());
+        Assert.assertTrue(snapshots.list().isEmpty());
+
+        // snapshots disabled
+        Snapshots none = new Snapshots(new File(tmpDir, "none"), 0, trash);
+        none.keep(install(target, "v1.9_0400").toPath());
+        Assert.assertFalse(target.exists());
+        Assert.assertTrue(none.list().isEmpty());
+    }
+
+    // by permissions, since File.canWrite() is always true for root
+    private static boolean isWritable(File file) throws Exception {
+        try {
+            return Files.getPosixFilePermissions(file.toPath()).contains(PosixFilePermission.OWNER_WRITE);
+        } catch (UnsupportedOperationException e) {
+            return file.canWrite();
+        }
+    }
+
+    private static File install(File target, String version) throws Exception {
+        FileUtils.writeStringToFile(new File(target, FINGERPRINT), version, UTF8);
+        FileUtils.writeStringToFile(new File(target, "lib/nexial-core.jar"),
+                                    StringUtils.removeEnd(version, ".zip"),
+                                    UTF8);
+        return target;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.FINGERPRINT;
+import static org.nexial.installer.Const.UTF8;
+
+public class StagedInstallTest {
+    private static final TreeOps treeOps = new TreeOps(2, null);
+
+    private File tmpDir;
+    private File target;
+    private File backup;
+    private Trash trash;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("StagedInstallTest").toFile();
+        target = new File(tmpDir, "nexial-core");
+        backup = new File(tmpDir, "nexial-core.BAK");
+        // outside of tmpDir, so that only installation directories are found there
+        trash = new Trash(Files.createTempDirectory("StagedInstallTest-trash").toFile(), treeOps);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+        // whatever is replaced or left over is deleted in the background
+        Assert.assertTrue(trash.await(10000));
+        FileUtils.deleteDirectory(trash.getDir());
+    }
+
+    @Test
+    public void commit() throws Exception {
+        install(target, "v1");
+
+        StagedInstall staged = new StagedInstall(target, null, treeOps, trash);
+        install(staged.prepare(), "v2");
+        Assert.assertEquals("v1", versionOf(target));
+        staged.commit();
+        staged.abort();
+
+        Assert.assertEquals("v2", versionOf(target));
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    @Test
+    public void commitFirstInstall() throws Exception {
+        StagedInstall staged = new StagedInstall(target, backup, treeOps, trash);
+        install(staged.prepare(), "v1");
+        staged.commit();
+
+        Assert.assertEquals("v1", versionOf(target));
+        Assert.assertFalse(backup.exists());
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    @Test
+    public void commitWithBackup() throws Exception {
+        install(target, "v1");
+        install(backup, "v0");
+
+        StagedInstall staged = new StagedInstall(target, backup, treeOps, trash);
+        install(staged.prepare(), "v2");
+        staged.commit();
+
+        Assert.assertEquals("v2", versionOf(target));
+        Assert.assertEquals("v1", versionOf(backup));
+        Assert.assertEquals(2, tmpDir.list().length);
+    }
+
+    @Test
+    public void commitWithBackupPrepared() throws Exception {
+        install(target, "v1");
+        install(backup, "v0");
+
+        StagedInstall staged = new StagedInstall(target, backup, treeOps, trash);
+        // as done while the distro is downloaded
+        staged.prepareBackup();
+        Assert.assertFalse(backup.exists());
+        Assert.assertEquals("v1", versionOf(target));
+
+        install(staged.prepare(), "v2");
+        staged.commit();
+
+        Assert.assertEquals("v2", versionOf(target));
+        Assert.assertEquals("v1", versionOf(backup));
+        Assert.assertEquals(2, tmpDir.list().length);
+    }
+
+    @Test
+    public void incompleteStaging() throws Exception {
+        install(target, "v1");
+
+        StagedInstall staged = new StagedInstall(target, backup, treeOps, trash);
+        File staging = staged.prepare();
+        install(staging, "v2");
+        FileUtils.writeStringToFile(new File(staging, "lib/nexial-core.jar"), "trunc", UTF8);
+        try {
+            staged.commit();
+            Assert.fail("expected incomplete staging to be rejected");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            staged.abort();
+        }
+
+        // current installation untouched
+        Assert.assertEquals("v1", versionOf(target));
+        Assert.assertFalse(backup.exists());
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    @Test
+    public void recoverReady() throws Exception {
+        // interrupted right after current installation was moved to backup
+        install(backup, "v1");
+        install(new File(tmpDir, "nexial-core.ready"), "v2");
+
+        new StagedInstall(target, backup, treeOps, trash).recover();
+        Assert.assertEquals("v2", versionOf(target));
+        Assert.assertEquals("v1", versionOf(backup));
+        Assert.assertEquals(2, tmpDir.list().length);
+    }
+
+    @Test
+    public void recoverPrevious() throws Exception {
+        // interrupted while staging, right after current installation was moved aside
+        install(new File(tmpDir, "nexial-core.old"), "v1");
+        install(new File(tmpDir, "nexial-core.staging"), "v2");
+
+        new StagedInstall(target, null, treeOps, trash).recover();
+        Assert.assertEquals("v1", versionOf(target));
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    @Test
+    public void recoverIntoEmptyTarget() throws Exception {
+        // interrupted between the renames, then -target (re)created before the next install
+        install(new File(tmpDir, "nexial-core.old"), "v1");
+        install(new File(tmpDir, "nexial-core.ready"), "v2");
+        Assert.assertTrue(target.mkdirs());
+
+        new StagedInstall(target, null, treeOps, trash).recover();
+        Assert.assertEquals("v2", versionOf(target));
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+
+        // no newer installation to complete: previous one is restored
+        FileUtils.deleteDirectory(target);
+        Assert.assertTrue(target.mkdirs());
+        install(new File(tmpDir, "nexial-core.old"), "v1");
+
+        new StagedInstall(target, null, treeOps, trash).recover();
+        Assert.assertEquals("v1", versionOf(target));
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    @Test
+    public void recoverStaging() throws Exception {
+        // interrupted while staging
+        install(target, "v1");
+        install(new File(tmpDir, "nexial-core.staging"), "v2");
+
+        new StagedInstall(target, null, treeOps, trash).recover();
+        Assert.assertEquals("v1", versionOf(target));
+        Assert.assertArrayEquals(new String[]{"nexial-core"}, tmpDir.list());
+    }
+
+    /** a minimal installation: a couple of files, listed in install manifest, and fingerprint */
+    private static void install(File dir, String version) throws IOException {
+        InstallManifest manifest = new InstallManifest();
+        for (String path : new String[]{"bin/nexial.sh", "lib/nexial-core.jar"}) {
+            File file = new File(dir, path);
+            FileUtils.writeStringToFile(file, path + " " + version, UTF8);
+            manifest.put(path, file.length(), 0, null, file.lastModified());
+        }
+        manifest.save(dir);
+        FileUtils.writeStringToFile(new File(dir, FINGERPRINT), version, UTF8);
+    }
+
+    private static String versionOf(File dir) throws IOException {
+        return FileUtils.readFileToString(new File(dir, FINGERPRINT), UTF8);
+    }
+}
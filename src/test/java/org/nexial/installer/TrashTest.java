@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class TrashTest {
+    private final TreeOps treeOps = new TreeOps(2, null);
+    private File tmpDir;
+    private Trash trash;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("TrashTest").toFile();
+        trash = new Trash(new File(tmpDir, "trash"), treeOps);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void discard() throws Exception {
+        File install = newTree("nexial-core");
+        File stage = newTree("nexial-core-v1.9_0400");
+
+        trash.discard(install.toPath());
+        trash.discard(stage.toPath());
+        Assert.assertFalse(install.exists());
+        Assert.assertFalse(stage.exists());
+
+        // deleted in the background
+        Assert.assertTrue(trash.await(10000));
+        Assert.assertTrue(trash.isEmpty());
+    }
+
+    @Test
+    public void discardSameName() throws Exception {
+        File install = newTree("nexial-core");
+        trash.discard(install.toPath());
+        install = newTree("nexial-core");
+        trash.discard(install.toPath());
+        Assert.assertFalse(install.exists());
+        Assert.assertTrue(trash.await(10000));
+    }
+
+    @Test
+    public void discardMissing() throws Exception {
+        trash.discard(new File(tmpDir, "nexial-core").toPath());
+        Assert.assertTrue(trash.isEmpty());
+    }
+
+    @Test
+    public void emptyLeftovers() throws Exception {
+        // discarded by a previous run that exited before deleting
+        FileUtils.writeStringToFile(new File(trash.getDir(), "nexial-core.1.1/lib/a.jar"), "a", UTF8);
+        FileUtils.writeStringToFile(new File(trash.getDir(), "nexial-core.2.2/lib/b.jar"), "b", UTF8);
+        Assert.assertFalse(trash.isEmpty());
+
+        trash.empty();
+        Assert.assertTrue(trash.isEmpty());
+        Assert.assertTrue(trash.getDir().isDirectory());
+    }
+
+    private File newTree(String name) throws Exception {
+        File dir = new File(tmpDir, name);
+        for (int i = 0; i < 20; i++) { FileUtils.writeStringToFile(new File(dir, "lib/" + i + ".jar"), "" + i, UTF8); }
+        FileUtils.writeStringToFile(new File(dir, "version.txt"), name, UTF8);
+        return dir;
+    }
+}
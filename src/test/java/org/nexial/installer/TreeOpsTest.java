@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class TreeOpsTest {
+    private final TreeOps treeOps = new TreeOps(4, null);
+    private File tmpDir;
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("TreeOpsTest").toFile();
+        source = new File(tmpDir, "source");
+        // enough files in one directory to be split into several batches
+        for (int i = 0; i < 50; i++) {
+            FileUtils.writeStringToFile(new File(source, "lib/" + i + ".jar"), i + "", UTF8);
+        }
+        FileUtils.writeStringToFile(new File(source, "bin/nexial.sh"), "#!/bin/bash", UTF8);
+        FileUtils.writeStringToFile(new File(source, "template/a/b/c/data.xlsx"), "data", UTF8);
+        Files.createDirectories(new File(source, "empty").toPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void copy() throws Exception {
+        File target = new File(tmpDir, "target");
+        TreeOps.Result result = treeOps.copy(source.toPath(), target.toPath());
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(52, result.getFiles());
+        Assert.assertEquals(FileUtils.sizeOfDirectory(source), result.getBytes());
+
+        Assert.assertEquals("49", FileUtils.readFileToString(new File(target, "lib/49.jar"), UTF8));
+        Assert.assertEquals("data", FileUtils.readFileToString(new File(target, "template/a/b/c/data.xlsx"), UTF8));
+        Assert.assertTrue(new File(target, "empty").isDirectory());
+        Assert.assertEquals(new File(source, "bin/nexial.sh").lastModified(),
+                            new File(target, "bin/nexial.sh").lastModified());
+        Assert.assertTrue(source.isDirectory());
+    }
+
+    @Test
+    public void copyWithErrors() throws Exception {
+        // a non-empty directory in the way of one file
+        File target = new File(tmpDir, "target");
+        FileUtils.writeStringToFile(new File(target, "lib/0.jar/MANIFEST.MF"), "in the way", UTF8);
+
+        TreeOps.Result result = treeOps.copy(source.toPath(), target.toPath());
+
+        // one failure doesn't stop the rest
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(1, result.getErrors().size());
+        Assert.assertTrue(result.getErrors().get(0).contains("0.jar"));
+        Assert.assertEquals(51, result.getFiles());
+        try {
+            result.check("copy");
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void move() throws Exception {
+        File target = new File(tmpDir, "target");
+        TreeOps.Result result = treeOps.move(source.toPath(), target.toPath());
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertTrue(result.isRenamed());
+        Assert.assertFalse(source.exists());
+        Assert.assertEquals("data", FileUtils.readFileToString(new File(target, "template/a/b/c/data.xlsx"), UTF8));
+        Assert.assertEquals(50, new File(target, "lib").list().length);
+    }
+
+    @Test
+    public void delete() throws Exception {
+        TreeOps.Result result = treeOps.delete(source.toPath());
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(52, result.getFiles());
+        Assert.assertFalse(source.exists());
+
+        // nothing to delete
+        result = treeOps.delete(source.toPath());
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(0, result.getFiles());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpdateDaemonTest {
+    private static final long INTERVAL = 6 * 60 * 60 * 1000;
+
+    @Test
+    public void offset() {
+        Assert.assertEquals(UpdateDaemon.offset("agent-001", INTERVAL), UpdateDaemon.offset("agent-001", INTERVAL));
+
+        // similar host names spread over the interval
+        int[] buckets = new int[10];
+        for (int i = 1; i <= 500; i++) {
+            long offset = UpdateDaemon.offset(String.format("agent-%03d", i), INTERVAL);
+            Assert.assertTrue(offset >= 0 && offset < INTERVAL);
+            buckets[(int) (offset * buckets.length / INTERVAL)]++;
+        }
+        for (int count : buckets) { Assert.assertTrue("uneven spread: " + count, count > 20 && count < 80); }
+    }
+
+    @Test
+    public void nextDelay() {
+        UpdateDaemon daemon = new UpdateDaemon(() -> true, INTERVAL, 1000, "agent-001");
+        long offset = UpdateDaemon.offset("agent-001", INTERVAL);
+
+        long now = System.currentTimeMillis();
+        long delay = daemon.nextDelay(now);
+        Assert.assertTrue(delay > 0 && delay <= INTERVAL);
+        Assert.assertEquals(offset, (now + delay) % INTERVAL);
+    }
+
+    @Test
+    public void backoff() throws Exception {
+        List<Long> checkedAt = new CopyOnWriteArrayList<>();
+        // fails 3 times, then succeeds
+        UpdateDaemon daemon = new UpdateDaemon(() -> {
+            checkedAt.add(System.nanoTime() / 1000000);
+            return checkedAt.size() > 3;
+        }, 1000, 20, "agent-001");
+
+        Thread thread = daemon.start();
+        long waitUntil = System.currentTimeMillis() + 10000;
+        while (checkedAt.size() < 4 && System.currentTimeMillis() < waitUntil) { Thread.sleep(10); }
+        thread.interrupt();
+        thread.join(5000);
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertEquals(4, checkedAt.size());
+        Assert.assertEquals(0, daemon.getFailures());
+        // at least half of 20, 40, 80 ms
+        for (int i = 1; i < 4; i++) {
+            long waited = checkedAt.get(i) - checkedAt.get(i - 1);
+            Assert.assertTrue("retried after " + waited + " ms", waited >= (20L << (i - 1)) / 2);
+        }
+    }
+}
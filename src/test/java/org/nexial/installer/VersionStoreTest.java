@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class VersionStoreTest {
+    private File tmpDir;
+    private Trash trash;
+    private VersionStore versions;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("VersionStoreTest").toFile();
+        TreeOps treeOps = new TreeOps(2, null);
+        trash = new Trash(new File(tmpDir, "trash"), treeOps);
+        versions = new VersionStore(new File(tmpDir, "versions"), new File(tmpDir, "store"), treeOps, trash);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        trash.await(5000);
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void useAndRemove() throws Exception {
+        install("nexial-core-v1.9_0400", "core 1");
+        install("nexial-core-v1.9_0410", "core 2");
+        Assert.assertEquals(Arrays.asList("nexial-core-v1.9_0400", "nexial-core-v1.9_0410"), versions.list());
+
+        // current installation (not side by side) is backed up
+        File target = new File(tmpDir, "nexial-core");
+        File backup = new File(tmpDir, "nexial-core.BAK");
+        FileUtils.writeStringToFile(new File(target, "lib/nexial-core.jar"), "core 0", UTF8);
+
+        versions.use("nexial-core-v1.9_0400.zip", target, backup);
+        Assert.assertEquals("nexial-core-v1.9_0400", versions.current(target));
+        Assert.assertEquals("core 1", FileUtils.readFileToString(new File(target, "lib/nexial-core.jar"), UTF8));
+        Assert.assertEquals("core 0", FileUtils.readFileToString(new File(backup, "lib/nexial-core.jar"), UTF8));
+
+        versions.use("nexial-core-v1.9_0410", target, backup);
+        Assert.assertEquals("nexial-core-v1.9_0410", versions.current(target));
+        Assert.assertEquals("core 2", FileUtils.readFileToString(new File(target, "lib/nexial-core.jar"), UTF8));
+
+        try {
+            versions.use("nexial-core-v1.9_0999", target, backup);
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            // not installed
+        }
+        Assert.assertEquals("nexial-core-v1.9_0410", versions.current(target));
+
+        // only what no other version uses goes
+        Assert.assertEquals(3, countStored());
+        versions.remove("nexial-core-v1.9_0400");
+        Assert.assertEquals(Arrays.asList("nexial-core-v1.9_0410"), versions.list());
+        Assert.assertEquals(2, countStored());
+        Assert.assertEquals("core 2", FileUtils.readFileToString(new File(target, "lib/nexial-core.jar"), UTF8));
+    }
+
+    private void install(String version, String core) throws Exception {
+        File staged = versions.stage(version);
+        FileUtils.writeStringToFile(new File(staged, "lib/nexial-core.jar"), core, UTF8);
+        FileUtils.writeStringToFile(new File(staged, "lib/setup.jar"), "setup", UTF8);
+
+        FileStore store = versions.getFiles();
+        InstallManifest manifest = new InstallManifest();
+        for (String path : Arrays.asList("lib/nexial-core.jar", "lib/setup.jar")) {
+            File file = new File(staged, path);
+            String sha256 = DistroCache.sha256(file);
+            store.add(file.toPath(), FileUtils.checksumCRC32(file), file.length(), sha256);
+            manifest.put(path, file.length(), FileUtils.checksumCRC32(file), sha256, file.lastModified());
+        }
+        manifest.save(staged);
+        versions.commit(version, staged);
+    }
+
+    private long countStored() throws Exception {
+        try (Stream<Path> files = Files.walk(new File(tmpDir, "store").toPath())) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
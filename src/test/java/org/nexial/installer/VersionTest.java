@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionTest {
+
+    @Test
+    public void parse() {
+        Version version = Version.parse("nexial-core-v1.9_0400");
+        Assert.assertTrue(version.isParsed());
+        Assert.assertEquals(1, version.getMajor());
+        Assert.assertEquals(9, version.getMinor());
+        Assert.assertEquals(400, version.getBuild());
+        Assert.assertSame(version, Version.parse("nexial-core-v1.9_0400"));
+
+        Version zip = Version.parse("nexial-core-v2.10_1021.zip");
+        Assert.assertEquals(2, zip.getMajor());
+        Assert.assertEquals(10, zip.getMinor());
+        Assert.assertEquals(1021, zip.getBuild());
+
+        Assert.assertFalse(Version.parse("nightly").isParsed());
+    }
+
+    @Test
+    public void compare() {
+        // numeric, not lexical: 1.10 is newer than 1.9, and build 1000 is newer than build 999
+        Assert.assertTrue(Version.parse("nexial-core-v1.10_0001").isNewerThan(Version.parse("nexial-core-v1.9_0999")));
+        Assert.assertTrue(Version.parse("nexial-core-v1.9_1000").isNewerThan(Version.parse("nexial-core-v1.9_999")));
+        Assert.assertFalse(Version.parse("nexial-core-v1.9_0400").isNewerThan(Version.parse("v1.9_0400")));
+        Assert.assertNotEquals(0, Version.parse("nexial-core-v1.9_0400").compareTo(Version.parse("v1.9_0400")));
+        Assert.assertTrue(Version.parse("nexial-core-v0.1_0001").compareTo(Version.parse("nightly")) > 0);
+    }
+
+    @Test
+    public void catalog() {
+        Map<String, String> versions = new LinkedHashMap<>();
+        versions.put("nexial-core-v1.9_0999", "url-0999");
+        versions.put("nexial-core-v1.10_0002", "url-1.10");
+        versions.put("nexial-core-v1.9_1000", "url-1000");
+        versions.put("nexial-core-v1.8_0500", "url-1.8");
+        versions.put("nightly", "url-nightly");
+
+        VersionCatalog catalog = VersionCatalog.of(versions);
+        Assert.assertEquals(5, catalog.size());
+        Assert.assertEquals("nexial-core-v1.10_0002", catalog.latest().getName());
+        Assert.assertEquals("nexial-core-v1.9_1000", catalog.latest(1, 9).getName());
+        Assert.assertNull(catalog.latest(1, 7));
+        Assert.assertNull(catalog.latest(2, 0));
+
+        Assert.assertEquals("nexial-core-v1.10_0002", catalog.resolve("latest").getName());
+        Assert.assertEquals("nexial-core-v1.9_1000", catalog.resolve("1.9.x").getName());
+        Assert.assertEquals("nexial-core-v1.9_1000", catalog.resolve("latest 1.9.x").getName());
+        Assert.assertEquals("nexial-core-v1.8_0500", catalog.resolve("1.8").getName());
+        Assert.assertEquals("nexial-core-v1.9_0999", catalog.resolve("nexial-core-v1.9_0999").getName());
+        Assert.assertNull(catalog.resolve("nexial-core-v1.9_0998"));
+
+        Assert.assertEquals("url-1000", catalog.getLocation("nexial-core-v1.9_1000"));
+        Assert.assertNull(catalog.getLocation("nexial-core-v1.9_0998"));
+        Assert.assertEquals(Arrays.asList("nexial-core-v1.10_0002", "nexial-core-v1.9_1000", "nexial-core-v1.9_0999",
+                                          "nexial-core-v1.8_0500", "nightly"),
+                            catalog.getNames());
+        Assert.assertEquals(catalog.getNames(), Arrays.asList(catalog.toMap().keySet().toArray()));
+
+        Assert.assertTrue(VersionCatalog.isVersionRange("latest"));
+        Assert.assertTrue(VersionCatalog.isVersionRange("1.9.x"));
+        Assert.assertFalse(VersionCatalog.isVersionRange("nexial-core-v1.9_1000"));
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class ZipExtractorTest {
+    private File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("ZipExtractorTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void extract() throws Exception {
+        File zip = createDistro(new File(tmpDir, "distro.zip"), 60, 64 * 1024);
+        File target = new File(tmpDir, "nexial-core");
+
+        InstallManifest manifest = new ZipExtractor(zip, target, 4).extract();
+        Assert.assertEquals(61, manifest.size());
+        Assert.assertTrue(manifest.contains("bin/nexial.sh"));
+        Assert.assertTrue(new File(target, "template/empty").isDirectory());
+        assertExtracted(zip, target);
+
+        // hashed while written
+        for (String path : manifest.getPaths()) {
+            Assert.assertEquals(DistroCache.sha256(new File(target, path)), manifest.get(path).getSha256());
+        }
+    }
+
+    @Test
+    public void extractSmall() throws Exception {
+        // too small to bother with more than one thread
+        File zip = createDistro(new File(tmpDir, "distro.zip"), 3, 16);
+        File target = new File(tmpDir, "nexial-core");
+
+        Assert.assertEquals(4, new ZipExtractor(zip, target, 4).extract().size());
+        assertExtracted(zip, target);
+    }
+
+    @Test
+    public void extractIncremental() throws Exception {
+        File target = new File(tmpDir, "nexial-core");
+        Map<String, String> v1 = new LinkedHashMap<>();
+        v1.put("bin/nexial.sh", "echo 1");
+        v1.put("lib/nexial-core.jar", "core 1");
+        v1.put("lib/unchanged.jar", "same");
+        v1.put("lib/old/obsolete.jar", "gone soon");
+        new ZipExtractor(createZip(new File(tmpDir, "v1.zip"), v1), target, 1).extract().save(target);
+        // touched after install: can't be trusted as unchanged anymore
+        Assert.assertTrue(new File(target, "lib/unchanged.jar").setLastModified(1000000000000L));
+        // user's own file, not from distro
+        FileUtils.writeStringToFile(new File(target, "lib/custom.jar"), "mine", UTF8);
+
+        InstallManifest installed = InstallManifest.load(target);
+        Assert.assertNotNull(installed);
+        Assert.assertEquals(4, installed.size());
+
+        Map<String, String> v2 = new LinkedHashMap<>(v1);
+        v2.put("bin/nexial.sh", "echo 2");
+        v2.put("lib/nexial-core.jar", "core 2");
+        v2.remove("lib/old/obsolete.jar");
+        v2.put("lib/new.jar", "new");
+        File v2Zip = createZip(new File(tmpDir, "v2.zip"), v2);
+
+        ZipExtractor extractor = new ZipExtractor(v2Zip, target, 1);
+        InstallManifest manifest = extractor.extract(installed);
+        manifest.save(target);
+        Assert.assertEquals(4, extractor.getWritten());
+        Assert.assertEquals(0, extractor.getSkipped());
+        Assert.assertEquals(1, extractor.getDeleted());
+        Assert.assertFalse(new File(target, "lib/old").exists());
+        Assert.assertEquals("mine", FileUtils.readFileToString(new File(target, "lib/custom.jar"), UTF8));
+        assertExtracted(v2Zip, target);
+
+        // nothing changed since
+        extractor = new ZipExtractor(v2Zip, target, 1);
+        extractor.extract(InstallManifest.load(target)).save(target);
+        Assert.assertEquals(0, extractor.getWritten());
+        Assert.assertEquals(4, extractor.getSkipped());
+        Assert.assertEquals(0, extractor.getDeleted());
+
+        // only the changed ones are written
+        v2.put("lib/nexial-core.jar", "core 3");
+        File v3Zip = createZip(new File(tmpDir, "v3.zip"), v2);
+        extractor = new ZipExtractor(v3Zip, target, 1);
+        extractor.extract(InstallManifest.load(target)).save(target);
+        Assert.assertEquals(1, extractor.getWritten());
+        Assert.assertEquals(3, extractor.getSkipped());
+        assertExtracted(v3Zip, target);
+        Assert.assertEquals(4, InstallManifest.load(target).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void extractOutsideOfTarget() throws Exception {
+        File zip = new File(tmpDir, "evil.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("bin/../../evil.sh"));
+            out.write("rm -rf /".getBytes());
+            out.closeEntry();
+        }
+
+        try {
+            new ZipExtractor(zip, new File(tmpDir, "nexial-core"), 1).extract();
+        } finally {
+            Assert.assertFalse(new File(tmpDir, "evil.sh").exists());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unzipStreamOutsideOfTarget() throws Exception {
+        File zip = new File(tmpDir, "evil.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("bin/../../evil.sh"));
+            out.write("rm -rf /".getBytes());
+            out.closeEntry();
+        }
+
+        // as streamed while downloading
+        try (InputStream in = Files.newInputStream(zip.toPath())) {
+            NexialInstaller.unzip(in, new File(tmpDir, "nexial-core"));
+        } finally {
+            Assert.assertFalse(new File(tmpDir, "evil.sh").exists());
+        }
+    }
+
+    @Test
+    public void partition() {
+        List<ZipEntry> entries = new ArrayList<>();
+        long[] sizes = {900, 500, 400, 300, 300, 200, 100, 100, 50, 50};
+        for (int i = 0; i < sizes.length; i++) {
+            ZipEntry entry = new ZipEntry("lib/" + i + ".jar");
+            entry.setCompressedSize(sizes[i]);
+            entries.add(entry);
+        }
+
+        List<List<ZipEntry>> batches = ZipExtractor.partition(entries, 3);
+        Assert.assertEquals(3, batches.size());
+        Set<String> names = new HashSet<>();
+        for (List<ZipEntry> batch : batches) {
+            long weight = batch.stream().mapToLong(ZipEntry::getCompressedSize).sum();
+            // 2900 in total: no batch should be far off 1/3 of that
+            Assert.assertTrue("unbalanced batch: " + weight, weight >= 900 && weight <= 1050);
+            batch.forEach(entry -> names.add(entry.getName()));
+        }
+        Assert.assertEquals(entries.size(), names.size());
+    }
+
+    /** enough entries for every available processor to get a share */
+    @Test
+    public void extractParallel() throws Exception {
+        File zip = createDistro(new File(tmpDir, "distro.zip"), 200, 64 * 1024);
+        File target = new File(tmpDir, "nexial-core");
+
+        new ZipExtractor(zip, target, 0).extract();
+        assertExtracted(zip, target);
+    }
+
+    @Test
+    public void extractShared() throws Exception {
+        FileStore store = new FileStore(new File(tmpDir, "store"));
+        Map<String, String> v1 = new LinkedHashMap<>();
+        v1.put("bin/nexial.sh", "echo 1");
+        v1.put("lib/nexial-core.jar", "core 1");
+        v1.put("lib/unchanged.jar", "same");
+        v1.put("lib/copy-of-unchanged.jar", "same");
+        File v1Target = new File(tmpDir, "v1");
+        ZipExtractor extractor = new ZipExtractor(createZip(new File(tmpDir, "v1.zip"), v1), v1Target, 1);
+        extractor.setStore(store);
+        InstallManifest v1Manifest = extractor.extract();
+        Assert.assertEquals(4, extractor.getWritten());
+        Assert.assertEquals(0, extractor.getLinked());
+        // same content in the same zip is stored once
+        Assert.assertTrue(Files.isSameFile(new File(v1Target, "lib/unchanged.jar").toPath(),
+                                           new File(v1Target, "lib/copy-of-unchanged.jar").toPath()));
+
+        Map<String, String> v2 = new LinkedHashMap<>(v1);
+        v2.put("lib/nexial-core.jar", "core 2");
+        File v2Zip = createZip(new File(tmpDir, "v2.zip"), v2);
+        File v2Target = new File(tmpDir, "v2");
+        extractor = new ZipExtractor(v2Zip, v2Target, 1);
+        extractor.setStore(store);
+        InstallManifest v2Manifest = extractor.extract();
+        Assert.assertEquals(1, extractor.getWritten());
+        Assert.assertEquals(3, extractor.getLinked());
+        assertExtracted(v2Zip, v2Target);
+
+        for (String path : Arrays.asList("bin/nexial.sh", "lib/unchanged.jar")) {
+            Assert.assertTrue(Files.isSameFile(new File(v1Target, path).toPath(), new File(v2Target, path).toPath()));
+            Assert.assertEquals(v1Manifest.get(path).getSha256(), v2Manifest.get(path).getSha256());
+        }
+        Assert.assertFalse(Files.isSameFile(new File(v1Target, "lib/nexial-core.jar").toPath(),
+                                            new File(v2Target, "lib/nexial-core.jar").toPath()));
+    }
+
+    /** a distro-like zip: bin/, lib/ with {@code files} somewhat compressible files, and an empty directory */
+    private static File createDistro(File zip, int files, int fileSize) throws IOException {
+        Random random = new Random(files);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("bin/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("bin/nexial.sh"));
+            out.write("#!/bin/bash\necho nexial\n".getBytes());
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("template/empty/"));
+            out.closeEntry();
+
+            byte[] content = new byte[fileSize];
+            for (int i = 0; i < files; i++) {
+                // half random, half zeros
+                random.nextBytes(content);
+                Arrays.fill(content, fileSize / 2, fileSize, (byte) 0);
+                out.putNextEntry(new ZipEntry("lib/" + (i % 7) + "/nexial-lib-" + i + ".jar"));
+                out.write(content, 0, fileSize - i % 5);
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private static File createZip(File zip, Map<String, String> files) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                out.putNextEntry(new ZipEntry(file.getKey()));
+                out.write(file.getValue().getBytes(UTF8));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private static void assertExtracted(File zip, File target) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                File extracted = new File(target, zipEntry.getName());
+                if (zipEntry.isDirectory()) {
+                    Assert.assertTrue(extracted.isDirectory());
+                } else {
+                    try (InputStream in = zipFile.getInputStream(zipEntry)) {
+                        Assert.assertArrayEquals(IOUtils.toByteArray(in), FileUtils.readFileToByteArray(extracted));
+                    }
+                }
+            }
+        }
+    }
+}
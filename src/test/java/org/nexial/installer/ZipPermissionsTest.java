@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nexial.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.nexial.installer.Const.UTF8;
+
+public class ZipPermissionsTest {
+    private File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = Files.createTempDirectory("ZipPermissionsTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void readModes() throws Exception {
+        Map<String, Integer> modes = new HashMap<>();
+        modes.put("bin/nexial", 0755);
+        modes.put("bin/nexial-readonly.sh", 0444);
+        File zip = createZip(modes, "bin/nexial", "bin/nexial-readonly.sh", "bin/nexial.sh", "lib/nexial-core.jar");
+
+        Assert.assertEquals(modes, ZipPermissions.readModes(zip));
+        // no central directory, no modes
+        Assert.assertTrue(ZipPermissions.readModes(new File(tmpDir, "not-there.zip")).isEmpty());
+    }
+
+    @Test
+    public void toPermissions() {
+        Assert.assertEquals(PosixFilePermissions.fromString("rwxr-xr-x"), ZipPermissions.toPermissions(0755));
+        Assert.assertEquals(PosixFilePermissions.fromString("rw-r-----"), ZipPermissions.toPermissions(0640));
+        // owner can always read and write
+        Assert.assertEquals(PosixFilePermissions.fromString("rw-r--r--"), ZipPermissions.toPermissions(0444));
+        Assert.assertEquals(PosixFilePermissions.fromString("rwx------"), ZipPermissions.toPermissions(0100));
+    }
+
+    @Test
+    public void extract() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        Map<String, Integer> modes = new HashMap<>();
+        modes.put("bin/nexial", 0750);
+        modes.put("bin/nexial-setup.sh", 0640);
+        modes.put("lib/nexial-core.jar", 0604);
+        File zip = createZip(modes, "bin/nexial", "bin/nexial-setup.sh", "bin/nexial.sh", "bin/nexial.CMD",
+                             "lib/nexial-core.jar", "lib/nexial-seeknow.jar");
+        File target = new File(tmpDir, "nexial-core");
+        new ZipExtractor(zip, target, 1).extract();
+
+        // from mode bits, regardless of extension
+        Assert.assertEquals("rwxr-x---", permissionsOf(new File(target, "bin/nexial")));
+        Assert.assertEquals("rw----r--", permissionsOf(new File(target, "lib/nexial-core.jar")));
+        // scripts are executable where readable
+        Assert.assertEquals("rwxr-x---", permissionsOf(new File(target, "bin/nexial-setup.sh")));
+        // no mode bits: by extension
+        Assert.assertTrue(new File(target, "bin/nexial.sh").canExecute());
+        Assert.assertTrue(new File(target, "bin/nexial.CMD").canExecute());
+        Assert.assertFalse(new File(target, "lib/nexial-seeknow.jar").canExecute());
+    }
+
+    /** zip of {@code names}, with unix mode bits set in the central directory for those in {@code modes} */
+    private File createZip(Map<String, Integer> modes, String... names) throws IOException {
+        File zip = new File(tmpDir, "distro.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes(UTF8));
+                out.closeEntry();
+            }
+        }
+
+        // ZipOutputStream always writes "made by" FAT, without external attributes
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(zip.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < bytes.limit() - 46; i++) {
+            if (bytes.getInt(i) != 0x02014b50) { continue; }
+            byte[] name = new byte[bytes.getShort(i + 28)];
+            for (int j = 0; j < name.length; j++) { name[j] = bytes.get(i + 46 + j); }
+            Integer mode = modes.get(new String(name, UTF8));
+            if (mode != null) {
+                bytes.putShort(i + 4, (short) (3 << 8 | 20));
+                bytes.putInt(i + 38, (0100000 | mode) << 16);
+            }
+        }
+        Files.write(zip.toPath(), bytes.array());
+        return zip;
+    }
+
+    private static String permissionsOf(File file) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath()));
+    }
+}